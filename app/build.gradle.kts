@@ -38,7 +38,10 @@ dependencies {
     implementation(libs.activity)
     implementation(libs.constraintlayout)
     implementation(libs.exifinterface)
+    implementation(libs.recyclerview)
     testImplementation(libs.junit)
+    // Implementación real de android.net.Uri para las pruebas locales del modelo
+    testImplementation(libs.android.all)
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 
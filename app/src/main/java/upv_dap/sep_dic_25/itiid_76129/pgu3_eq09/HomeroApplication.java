@@ -0,0 +1,32 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09;
+
+import android.app.Application;
+import com.squareup.picasso.Picasso;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.BitmapCache;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ThumbnailDiskCache;
+
+/**
+ * Aplicación HomeroImageArranger.
+ * Configura los recursos compartidos por todas las pantallas, como la caché de bitmaps.
+ */
+public class HomeroApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+
+        // Picasso usa la misma caché LRU que la exportación a PDF
+        // y resuelve las miniaturas de la cuadrícula desde la caché en disco
+        Picasso picasso = new Picasso.Builder(this)
+                .memoryCache(BitmapCache.getInstance().asPicassoCache())
+                .addRequestHandler(ThumbnailDiskCache.getInstance(this).asRequestHandler())
+                .build();
+        Picasso.setSingletonInstance(picasso);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapCache.getInstance().trimMemory(level);
+    }
+}
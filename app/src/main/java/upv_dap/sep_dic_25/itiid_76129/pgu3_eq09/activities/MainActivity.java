@@ -4,35 +4,45 @@ import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.net.Uri;
 import android.os.Bundle;
-import android.os.Environment;
 import android.util.Log;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
-import android.widget.GridView;
 import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
-import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
-import java.io.File;
+import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import com.google.android.material.appbar.MaterialToolbar;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.BitSet;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.R;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.adapters.ImageGridAdapter;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
-import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ImageMetadataExtractor;
-import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PDFGenerator;
-import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PermissionManager;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageSize;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.AutoPaginator;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.CaptureDateSorter;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ExportOutput;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ExportProfile;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.GridOptionsBuilder;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ImageMetadataService;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PdfExportEngine;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ProjectStore;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.QualityReport;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ThumbnailDiskCache;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.UriValidator;
 
 /**
  * Actividad principal de la aplicación HomeroImageArranger.
@@ -53,18 +63,29 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
     private Button layoutButton;
     private Button addPlaceholderButton;
     private Button deleteSelectedButton;
-    private GridView imagesGridView;
+    private RecyclerView imagesGridView;
+    private GridLayoutManager gridLayoutManager;
     private TextView metadataTextView;
     private TextView pageInfoTextView;
     private Spinner pageSizeSpinner;
+    private Spinner exportProfileSpinner;
 
-    private PermissionManager permissionManager;
     private ImageGridAdapter imageAdapter;
     private final List<ImagePage> pages = new ArrayList<>();
     private int currentPageIndex = 0;
-    private PDFGenerator.PageSize currentPageSize = PDFGenerator.PageSize.LETTER;
+    private EnumSet<PageSize> currentPageSizes = EnumSet.of(PageSize.LETTER);
+    private ExportProfile currentExportProfile = ExportProfile.SCREEN;
 
     private ActivityResultLauncher<Intent> imagePickerLauncher;
+    private ActivityResultLauncher<Intent> autoArrangeLauncher;
+    private PdfExportEngine exportEngine;
+    private ImageMetadataService metadataService;
+    private UriValidator uriValidator;
+    private ProjectStore projectStore;
+    @Nullable
+    private Uri pendingMetadataUri;
+    @Nullable
+    private PdfExportEngine.Job exportJob;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -74,14 +95,31 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
 
         initializeComponents();
         setupUI();
-        checkAndRequestPermissions();
+    }
+
+    @Override
+    protected void onStop() {
+        // Si el proceso muere en segundo plano el proyecto ya está en disco
+        projectStore.saveNow();
+        super.onStop();
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (exportJob != null) {
+            exportJob.cancel();
+            exportJob = null;
+        }
+        exportEngine.shutdown();
+        super.onDestroy();
     }
 
     private void initializeComponents() {
-        pages.clear();
-        pages.add(new ImagePage());
-        currentPageIndex = 0;
-        permissionManager = new PermissionManager(this);
+        projectStore = ProjectStore.getInstance(this);
+        restoreProject();
+        exportEngine = new PdfExportEngine(this);
+        metadataService = ImageMetadataService.getInstance(this);
+        uriValidator = UriValidator.getInstance(this);
 
         selectImagesButton = findViewById(R.id.btn_select_images);
         generatePdfButton = findViewById(R.id.btn_generate_pdf);
@@ -96,10 +134,11 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
         metadataTextView = findViewById(R.id.tv_metadata);
         pageInfoTextView = findViewById(R.id.tv_page_info);
         pageSizeSpinner = findViewById(R.id.spinner_page_size);
+        exportProfileSpinner = findViewById(R.id.spinner_export_profile);
 
         deleteSelectedButton.setEnabled(false);
 
-        imageAdapter = new ImageGridAdapter(this, getCurrentPage().getMutableItems());
+        imageAdapter = new ImageGridAdapter(this);
         imageAdapter.setOnImageClickListener(this);
         imageAdapter.setSelectionListener(hasSelection -> {
             deleteSelectedButton.setEnabled(hasSelection);
@@ -115,11 +154,20 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
                         processSelectedImages(result.getData());
                     }
                 });
+        autoArrangeLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                        autoArrangeSelectedImages(result.getData());
+                    }
+                });
     }
 
     private void setupUI() {
+        gridLayoutManager = new GridLayoutManager(this, getCurrentPage().getColumns());
+        imagesGridView.setLayoutManager(gridLayoutManager);
         imagesGridView.setAdapter(imageAdapter);
-        imagesGridView.setNumColumns(getCurrentPage().getColumns());
+        imageAdapter.updateItems(getCurrentPage());
         metadataTextView.setText(DEFAULT_METADATA_MESSAGE);
         updatePageInfo();
         updateLayoutButtonLabel();
@@ -134,6 +182,24 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
         deleteSelectedButton.setOnClickListener(v -> removeSelectedImages());
         layoutButton.setOnClickListener(v -> showLayoutSelectionDialog());
 
+        MaterialToolbar toolbar = findViewById(R.id.topAppBar);
+        toolbar.inflateMenu(R.menu.menu_main);
+        toolbar.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == R.id.action_select_all) {
+                imageAdapter.selectAll();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_auto_arrange) {
+                autoArrangeLauncher.launch(createImageSelectorIntent());
+                return true;
+            }
+            if (item.getItemId() == R.id.action_sort_by_date) {
+                sortPagesByCaptureDate();
+                return true;
+            }
+            return false;
+        });
+
         ArrayAdapter<CharSequence> sizeAdapter = ArrayAdapter.createFromResource(
                 this,
                 R.array.page_size_options,
@@ -143,7 +209,14 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
         pageSizeSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                currentPageSize = position == 0 ? PDFGenerator.PageSize.LETTER : PDFGenerator.PageSize.LEGAL;
+                // La última opción exporta ambos tamaños decodificando cada imagen una sola vez
+                if (position == 0) {
+                    currentPageSizes = EnumSet.of(PageSize.LETTER);
+                } else if (position == 1) {
+                    currentPageSizes = EnumSet.of(PageSize.LEGAL);
+                } else {
+                    currentPageSizes = EnumSet.of(PageSize.LETTER, PageSize.LEGAL);
+                }
             }
 
             @Override
@@ -151,58 +224,102 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
                 // Mantener tamaño actual
             }
         });
-    }
-
-    /**
-     * Verifica y solicita permisos necesarios como en la aplicación original
-     */
-    private void checkAndRequestPermissions() {
-        if (permissionManager.checkPermission()) {
-            Log.d(TAG, "onCreate: Permission already granted, create folder");
-            createFolder();
-        } else {
-            Log.d(TAG, "onCreate: Permission was not granted, request");
-            permissionManager.requestPermission();
-        }
-    }
-
-    /**
-     * Crea la carpeta para almacenar archivos como en la aplicación original
-     */
-    private void createFolder() {
 
-        String directory = "Documents";
-        String folderName = "HomeroImageArranger";
-        File file = new File(Environment.getExternalStorageDirectory(), directory + "/" + folderName);
+        ArrayAdapter<CharSequence> profileAdapter = ArrayAdapter.createFromResource(
+                this,
+                R.array.export_profile_options,
+                android.R.layout.simple_spinner_item);
+        profileAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        exportProfileSpinner.setAdapter(profileAdapter);
+        exportProfileSpinner.setSelection(currentExportProfile.ordinal());
+        exportProfileSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                // El arreglo de opciones sigue el orden del enum
+                currentExportProfile = ExportProfile.values()[position];
+            }
 
-        boolean folderCreated = file.mkdirs();
-        if (folderCreated || file.exists()) {
-            showToast("Carpeta creada: " + file.getAbsolutePath());
-        } else {
-            showToast("No se pudo crear la carpeta...");
-        }
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+                // Mantener perfil actual
+            }
+        });
     }
 
     /**
      * Abre el selector de múltiples imágenes
      */
     private void openImageSelector() {
-        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
-        intent.setType("image/*");
-        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
-
         // startActivityForResult(Intent.createChooser(intent, "Seleccionar Imágenes"),
         // REQUEST_IMAGE_SELECTION);
-        imagePickerLauncher.launch(Intent.createChooser(intent, "Seleccionar Imágenes"));
+        // Sin chooser: el selector del sistema es quien concede el permiso persistente
+        imagePickerLauncher.launch(createImageSelectorIntent());
+    }
+
+    private Intent createImageSelectorIntent() {
+        // ACTION_OPEN_DOCUMENT entrega URIs con permiso persistente, necesarios para restaurar el proyecto
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("image/*");
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+        return intent;
     }
 
     private void generatePDF() {
+        if (exportJob != null && !exportJob.isFinished()) {
+            // Un segundo toque durante la exportación la cancela
+            exportJob.cancel();
+            generatePdfButton.setEnabled(false);
+            generatePdfButton.setText("Cancelando...");
+            return;
+        }
+
         if (!hasAnyImages()) {
             showToast("Selecciona al menos una imagen antes de generar el PDF");
             return;
         }
 
-        PDFGenerator.generatePDF(this, pages, currentPageSize);
+        generatePdfButton.setText("Cancelar");
+        exportJob = exportEngine.export(pages, currentPageSizes, currentExportProfile,
+                new PdfExportEngine.Callback() {
+            @Override
+            public void onProgress(int pageNumber, int totalPages) {
+                generatePdfButton.setText(String.format(Locale.getDefault(),
+                        "Cancelar (%d/%d)", pageNumber, totalPages));
+            }
+
+            @Override
+            public void onSuccess(List<ExportOutput> outputs, QualityReport report) {
+                onExportFinished();
+                StringBuilder locations = new StringBuilder();
+                for (ExportOutput output : outputs) {
+                    locations.append('\n').append(output.getLocation());
+                }
+                if (!report.isEmpty()) {
+                    locations.append("\n\n").append(report.summarize());
+                }
+                Toast.makeText(MainActivity.this, "PDF generado en:" + locations,
+                        Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onError(String message) {
+                onExportFinished();
+                showToast(message);
+            }
+
+            @Override
+            public void onCancelled() {
+                onExportFinished();
+                showToast("Exportación cancelada");
+            }
+        });
+    }
+
+    private void onExportFinished() {
+        exportJob = null;
+        generatePdfButton.setEnabled(true);
+        generatePdfButton.setText("Generar PDF");
     }
 
     /*
@@ -224,25 +341,118 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
     private void processSelectedImages(Intent data) {
         ImagePage currentPage = getCurrentPage();
         int previousCount = currentPage.getImageCount();
+        List<Uri> selectedUris = collectSelectedUris(data);
+        for (Uri imageUri : selectedUris) {
+            currentPage.addImage(imageUri);
+        }
+
+        // La validación lee el encabezado de cada imagen en paralelo y deja listos sus metadatos
+        validateImported(selectedUris);
+        // Las miniaturas se generan en segundo plano para que la cuadrícula no decodifique las originales
+        ThumbnailDiskCache.getInstance(this).prefetch(selectedUris, imageAdapter.getCellSize());
+
+        refreshGrid();
+        Log.d(TAG, "Seleccionadas " + currentPage.getImageCount() + " imágenes en la página actual");
+        maybePromptLayoutSelection(previousCount, currentPage);
+    }
+
+    /**
+     * Reparte las imágenes seleccionadas en páginas nuevas después de la actual, eligiendo
+     * la rejilla de cada página según la proporción de sus imágenes
+     */
+    private void autoArrangeSelectedImages(Intent data) {
+        List<Uri> selectedUris = collectSelectedUris(data);
+        if (selectedUris.isEmpty()) {
+            return;
+        }
+        ThumbnailDiskCache.getInstance(this).prefetch(selectedUris, imageAdapter.getCellSize());
+        validateImported(selectedUris);
+        showToast("Acomodando " + selectedUris.size() + " imágenes...");
+
+        // Las proporciones salen de los encabezados ya leídos por el servicio de metadatos, sin decodificar píxeles
+        metadataService.lookupAll(selectedUris, metadata -> {
+            if (isDestroyed()) {
+                return;
+            }
+            float[] aspectRatios = new float[selectedUris.size()];
+            for (int i = 0; i < aspectRatios.length; i++) {
+                ImageMetadata imageMetadata = metadata.get(selectedUris.get(i));
+                aspectRatios[i] = imageMetadata != null ? imageMetadata.getAspectRatio() : 0f;
+            }
+            PageSize pageSize = currentPageSizes.iterator().next();
+            List<AutoPaginator.PageGroup> groups = AutoPaginator.paginate(aspectRatios,
+                    pageSize.getWidth() / (float) pageSize.getHeight(), AutoPaginator.DEFAULT_TARGET_PER_PAGE);
+
+            // Una página actual vacía se reemplaza en lugar de quedar en blanco antes de las nuevas
+            int insertAt = currentPageIndex + 1;
+            if (getCurrentPage().getTotalSlots() == 0) {
+                pages.remove(currentPageIndex);
+                insertAt = currentPageIndex;
+            }
+            int position = insertAt;
+            for (AutoPaginator.PageGroup group : groups) {
+                ImagePage page = new ImagePage();
+                for (int i = group.start; i < group.start + group.count; i++) {
+                    page.addImage(selectedUris.get(i));
+                }
+                page.setLayout(group.rows, group.columns);
+                pages.add(position++, page);
+            }
+            currentPageIndex = insertAt;
+            refreshGrid();
+            resetMetadataMessage();
+            showToast(String.format(Locale.getDefault(), "%d imágenes repartidas en %d páginas",
+                    selectedUris.size(), groups.size()));
+        });
+    }
+
+    /**
+     * Valida en paralelo las imágenes importadas y marca en la cuadrícula las que no se pueden leer
+     * en cuanto se conoce su resultado
+     */
+    private void validateImported(List<Uri> uris) {
+        uriValidator.validate(uris, new UriValidator.Callback() {
+            @Override
+            public void onUriValidated(Uri uri, UriValidator.Status status) {
+                if (status == UriValidator.Status.UNREADABLE && !isDestroyed()) {
+                    imageAdapter.markUnreadable(uri);
+                }
+            }
+
+            @Override
+            public void onValidationFinished(int unreadableCount) {
+                if (unreadableCount > 0 && !isDestroyed()) {
+                    showToast(String.format(Locale.getDefault(),
+                            "%d imágenes no se pueden leer y se omitirán en el PDF", unreadableCount));
+                }
+            }
+        });
+    }
+
+    /**
+     * Obtiene las URIs elegidas en el selector y conserva el permiso de lectura de cada una
+     */
+    private List<Uri> collectSelectedUris(Intent data) {
+        List<Uri> selectedUris = new ArrayList<>();
         if (data.getClipData() != null) {
             // Múltiples imágenes seleccionadas
             int count = data.getClipData().getItemCount();
             for (int i = 0; i < count; i++) {
                 Uri imageUri = data.getClipData().getItemAt(i).getUri();
-                currentPage.addImage(imageUri);
+                takeReadPermission(imageUri);
+                selectedUris.add(imageUri);
             }
         } else if (data.getData() != null) {
             // Una sola imagen seleccionada
-            currentPage.addImage(data.getData());
+            takeReadPermission(data.getData());
+            selectedUris.add(data.getData());
         }
-
-        refreshGrid();
-        Log.d(TAG, "Seleccionadas " + currentPage.getImageCount() + " imágenes en la página actual");
-        maybePromptLayoutSelection(previousCount, currentPage);
+        return selectedUris;
     }
 
     @Override
     public void onImageClick(PageItem item, int position) {
+        pendingMetadataUri = null;
         if (item.isPlaceholder()) {
             metadataTextView.setText("Espacio en blanco reservado");
             return;
@@ -254,24 +464,23 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
             return;
         }
 
-        ImageMetadata metadata = ImageMetadataExtractor.extractMetadata(this, imageUri);
-        if (metadata != null) {
-            metadataTextView.setText(metadata.toString());
-            Log.d(TAG, "Metadata: " + metadata.toString());
-        } else {
-            metadataTextView.setText("No es posible obtener metadatos");
-        }
-    }
-
-    @Override
-    public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions,
-            @NonNull int[] grantResults) {
-        super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-
-        // Manejar resultado de permisos para versiones anteriores a Android 11
-        if (permissionManager.handlePermissionResult(requestCode, permissions, grantResults)) {
-            createFolder();
+        pendingMetadataUri = imageUri;
+        if (metadataService.peek(imageUri) == null) {
+            metadataTextView.setText("Cargando metadatos...");
         }
+        metadataService.lookup(imageUri, (uri, metadata) -> {
+            if (!uri.equals(pendingMetadataUri)) {
+                // El usuario ya tocó otra imagen
+                return;
+            }
+            pendingMetadataUri = null;
+            if (metadata != null) {
+                metadataTextView.setText(metadata.toString());
+                Log.d(TAG, "Metadata: " + metadata.toString());
+            } else {
+                metadataTextView.setText("No es posible obtener metadatos");
+            }
+        });
     }
 
     /**
@@ -286,10 +495,45 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
     }
 
     private void refreshGrid() {
-        imageAdapter.updateItems(getCurrentPage().getMutableItems(), getCurrentPage().getColumns());
-        imagesGridView.setNumColumns(getCurrentPage().getColumns());
+        gridLayoutManager.setSpanCount(getCurrentPage().getColumns());
+        imageAdapter.updateItems(getCurrentPage());
         updatePageInfo();
         updateLayoutButtonLabel();
+        // Toda edición pasa por aquí; el guardado agrupa los cambios y solo reescribe las páginas modificadas
+        projectStore.scheduleSave(pages, currentPageIndex);
+    }
+
+    /**
+     * Recupera el último proyecto guardado en segundo plano; mientras tanto se muestra una página vacía.
+     * Solo se lee el índice y cada página carga sus imágenes al mostrarse por primera vez.
+     */
+    private void restoreProject() {
+        pages.clear();
+        pages.add(new ImagePage());
+        currentPageIndex = 0;
+        projectStore.restore(project -> {
+            if (isDestroyed() || project == null || project.getPages().isEmpty()) {
+                return;
+            }
+            if (pages.size() != 1 || getCurrentPage().getTotalSlots() > 0) {
+                // El usuario empezó a editar antes de que terminara la lectura; no se le quita su trabajo
+                Log.w(TAG, "Workspace edited before restore finished, keeping current pages");
+                return;
+            }
+            pages.clear();
+            pages.addAll(project.getPages());
+            currentPageIndex = project.getCurrentPageIndex();
+            refreshGrid();
+        });
+    }
+
+    private void takeReadPermission(Uri uri) {
+        try {
+            // El permiso persistente permite abrir la imagen al restaurar el proyecto tras reiniciar la app
+            getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.w(TAG, "Persistable permission not granted for " + uri, e);
+        }
     }
 
     private void updatePageInfo() {
@@ -307,6 +551,28 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
                 page.getEffectiveRows(), page.getColumns()));
     }
 
+    /**
+     * Ordena las imágenes de todas las páginas por fecha de captura, conservando
+     * los espacios de cada página
+     */
+    private void sortPagesByCaptureDate() {
+        Set<Uri> uris = CaptureDateSorter.collectUris(pages);
+        if (uris.size() < 2) {
+            showToast("Agrega al menos dos imágenes para ordenar");
+            return;
+        }
+        showToast("Ordenando por fecha...");
+        metadataService.lookupAll(uris, metadata -> {
+            if (isDestroyed()) {
+                return;
+            }
+            int sorted = CaptureDateSorter.sortByCaptureDate(pages, metadata);
+            refreshGrid();
+            resetMetadataMessage();
+            Log.d(TAG, "Sorted " + sorted + " images by capture date");
+        });
+    }
+
     private void clearWorkspace() {
         pages.clear();
         pages.add(new ImagePage());
@@ -352,6 +618,7 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
     }
 
     private void resetMetadataMessage() {
+        pendingMetadataUri = null;
         metadataTextView.setText(DEFAULT_METADATA_MESSAGE);
     }
 
@@ -362,14 +629,15 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
     }
 
     private void removeSelectedImages() {
-        List<Integer> positions = imageAdapter.getSelectedPositions();
+        BitSet positions = imageAdapter.getSelectedPositions();
         if (positions.isEmpty()) {
             showToast("Selecciona elementos para eliminar");
             return;
         }
 
-        Collections.sort(positions);
         getCurrentPage().removePositions(positions);
+        // Las posiciones eliminadas ya no existen; no se espera a que la comparación en segundo plano las descarte
+        imageAdapter.clearSelection();
         refreshGrid();
         resetMetadataMessage();
         showToast("Elementos eliminados");
@@ -377,7 +645,7 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
 
     private void showLayoutSelectionDialog() {
         ImagePage page = getCurrentPage();
-        List<GridOption> options = buildGridOptions(Math.max(1, page.getTotalSlots()));
+        List<GridOptionsBuilder.GridOption> options = GridOptionsBuilder.build(Math.max(1, page.getTotalSlots()));
         CharSequence[] labels = new CharSequence[options.size()];
         for (int i = 0; i < options.size(); i++) {
             labels[i] = options.get(i).label;
@@ -386,7 +654,7 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
         new AlertDialog.Builder(this)
                 .setTitle("Selecciona la rejilla")
                 .setItems(labels, (dialog, which) -> {
-                    GridOption option = options.get(which);
+                    GridOptionsBuilder.GridOption option = options.get(which);
                     page.setLayout(option.rows, option.columns);
                     refreshGrid();
                 })
@@ -394,57 +662,9 @@ public class MainActivity extends AppCompatActivity implements ImageGridAdapter.
                 .show();
     }
 
-    private List<GridOption> buildGridOptions(int slotCount) {
-        List<GridOption> options = new ArrayList<>();
-        addOption(options, 1, slotCount);
-        if (slotCount > 1) {
-            addOption(options, slotCount, 1);
-        }
-
-        int maxDimension = Math.min(slotCount, 6);
-        for (int rows = 2; rows <= maxDimension; rows++) {
-            int columns = (int) Math.ceil(slotCount / (double) rows);
-            addOption(options, rows, columns);
-            addOption(options, columns, rows);
-        }
-
-        options.sort((a, b) -> {
-            int areaCompare = Integer.compare(a.rows * a.columns, b.rows * b.columns);
-            if (areaCompare != 0) {
-                return areaCompare;
-            }
-            return Integer.compare(a.rows, b.rows);
-        });
-
-        return options;
-    }
-
-    private void addOption(List<GridOption> options, int rows, int columns) {
-        rows = Math.max(1, rows);
-        columns = Math.max(1, columns);
-        for (GridOption option : options) {
-            if (option.rows == rows && option.columns == columns) {
-                return;
-            }
-        }
-        options.add(new GridOption(rows, columns));
-    }
-
     private void maybePromptLayoutSelection(int previousCount, ImagePage page) {
         if (previousCount <= 3 && page.getImageCount() > 3 && !page.isLayoutCustomized()) {
             showLayoutSelectionDialog();
         }
     }
-
-    private static class GridOption {
-        final int rows;
-        final int columns;
-        final String label;
-
-        GridOption(int rows, int columns) {
-            this.rows = rows;
-            this.columns = columns;
-            this.label = String.format(Locale.getDefault(), "%dx%d", rows, columns);
-        }
-    }
 }
@@ -1,36 +1,80 @@
 package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.adapters;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.AbsListView;
-import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.TextView;
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+import com.squareup.picasso.Callback;
 import com.squareup.picasso.Picasso;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.R;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PageLayoutEngine;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PerformanceMetrics;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.ThumbnailDiskCache;
 
 /**
  * Adaptador personalizado para mostrar imágenes y espacios en blanco dentro de
  * una cuadrícula
  * con soporte de selección múltiple.
+ * Los cambios se aplican con {@link DiffUtil} sobre identificadores estables, de modo que
+ * solo se vuelven a enlazar las celdas que cambiaron y la selección sobrevive a las ediciones.
+ * La comparación se calcula fuera del hilo principal; al cambiar de página no se compara y se
+ * vuelve a enlazar todo.
  */
-public class ImageGridAdapter extends BaseAdapter {
+public class ImageGridAdapter extends RecyclerView.Adapter<ImageGridAdapter.ViewHolder> {
 
     private static final int CELL_SIZE = 320;
+    // Carga útil para actualizar solo el estado de selección sin volver a pedir la imagen
+    private static final Object PAYLOAD_SELECTION = new Object();
+    // Carga útil para mostrar la marca de imagen ilegible sin volver a pedir la miniatura
+    private static final Object PAYLOAD_UNREADABLE = new Object();
+
+    // Compartido por todas las instancias para no dejar un hilo por cada actividad recreada
+    private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "grid-diff");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
 
-    private final Context context;
-    private List<PageItem> pageItems;
     private final LayoutInflater inflater;
-    private final Set<Integer> selectedPositions = new HashSet<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Se reemplaza completa en cada actualización y nunca se modifica, así el hilo de comparación la lee sin copiarla
+    private List<PageItem> pageItems = new ArrayList<>();
+    private ImagePage currentPage;
+    // Descarta las comparaciones que terminan después de una actualización más reciente
+    private int diffGeneration;
+    private final PerformanceMetrics metrics = new PerformanceMetrics();
+    private BitSet selectedPositions = new BitSet();
+    // Imágenes que no pasaron la validación al importarse; se marcan en todas las páginas
+    private final Set<Uri> unreadableUris = new HashSet<>();
+    // Última posición marcada; una pulsación larga con selección activa selecciona el rango desde aquí
+    private int selectionAnchor = RecyclerView.NO_POSITION;
     private OnImageClickListener onImageClickListener;
     private SelectionListener selectionListener;
+    private RecyclerView recyclerView;
+    // El lado de las celdas depende del ancho de la lista, que se conoce hasta después del primer layout
+    private final View.OnLayoutChangeListener widthListener =
+        (view, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            if (right - left != oldRight - oldLeft) {
+                view.post(() -> notifyItemRangeChanged(0, pageItems.size()));
+            }
+        };
     private int columnCount = 3;
 
     /**
@@ -47,10 +91,11 @@ public class ImageGridAdapter extends BaseAdapter {
         void onSelectionChanged(boolean hasSelection);
     }
 
-    public ImageGridAdapter(Context context, List<PageItem> pageItems) {
-        this.context = context;
-        this.pageItems = pageItems;
+    public ImageGridAdapter(Context context) {
         this.inflater = LayoutInflater.from(context);
+        setHasStableIds(true);
+        // Las miniaturas que no estaban en memoria se cuentan como acierto o fallo de la caché en disco
+        ThumbnailDiskCache.getInstance(context).setLoadMetrics(metrics);
     }
 
     public void setOnImageClickListener(OnImageClickListener listener) {
@@ -61,113 +106,221 @@ public class ImageGridAdapter extends BaseAdapter {
         this.selectionListener = listener;
     }
 
-    public void updateItems(List<PageItem> newItems, int newColumnCount) {
-        this.pageItems = newItems;
-        this.columnCount = Math.max(1, newColumnCount);
-        if (!selectedPositions.isEmpty()) {
-            selectedPositions.clear();
-            notifySelectionListener();
+    /**
+     * Muestra el contenido actual de una página. Si es la misma página que ya se muestra, solo se
+     * notifican las diferencias, calculadas en segundo plano; si es otra, se vuelve a enlazar todo.
+     * @param page Página a mostrar; sus espacios se copian
+     */
+    public void updateItems(ImagePage page) {
+        List<PageItem> newItems = new ArrayList<>(page.getItems());
+        int columns = Math.max(1, page.getColumns());
+        int generation = ++diffGeneration;
+
+        if (page != currentPage) {
+            // Dos páginas distintas no comparten elementos; comparar solo costaría tiempo
+            currentPage = page;
+            pageItems = newItems;
+            columnCount = columns;
+            selectionAnchor = RecyclerView.NO_POSITION;
+            boolean hadSelection = !selectedPositions.isEmpty();
+            selectedPositions = new BitSet();
+            notifyDataSetChanged();
+            if (hadSelection) {
+                notifySelectionListener();
+            }
+            return;
+        }
+
+        if (columns != columnCount) {
+            // Cambia el tamaño de todas las celdas, así que se vuelven a enlazar todas
+            columnCount = columns;
+            notifyItemRangeChanged(0, pageItems.size());
         }
-        notifyDataSetChanged();
+        List<PageItem> oldItems = pageItems;
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new ItemDiff(oldItems, newItems), false);
+            mainHandler.post(() -> {
+                if (generation != diffGeneration) {
+                    return;
+                }
+                pageItems = newItems;
+                remapSelection(diff, oldItems.size());
+                diff.dispatchUpdatesTo(this);
+            });
+        });
     }
 
     @Override
-    public int getCount() {
-        return pageItems != null ? pageItems.size() : 0;
+    public int getItemCount() {
+        return pageItems.size();
     }
 
     @Override
-    public Object getItem(int position) {
-        return pageItems != null ? pageItems.get(position) : null;
+    public long getItemId(int position) {
+        return pageItems.get(position).getId();
     }
 
+    @NonNull
     @Override
-    public long getItemId(int position) {
-        return position;
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = inflater.inflate(R.layout.item_image_cell, parent, false);
+        ViewHolder holder = new ViewHolder(view);
+
+        // Los listeners se crean una vez por vista y resuelven la posición al momento del click
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            if (!selectedPositions.isEmpty()) {
+                toggleSelection(position);
+            } else if (onImageClickListener != null) {
+                onImageClickListener.onImageClick(pageItems.get(position), position);
+            }
+        });
+        view.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return true;
+            }
+            if (selectionAnchor != RecyclerView.NO_POSITION && selectedPositions.get(selectionAnchor)
+                && selectionAnchor != position) {
+                selectRange(selectionAnchor, position);
+            } else {
+                toggleSelection(position);
+            }
+            return true;
+        });
+        return holder;
     }
 
     @Override
-    public View getView(final int position, View convertView, ViewGroup parent) {
-        ViewHolder holder;
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && (payloads.contains(PAYLOAD_SELECTION) || payloads.contains(PAYLOAD_UNREADABLE))) {
+            bindSelection(holder, position);
+            bindUnreadable(holder, pageItems.get(position));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
 
-        if (convertView == null) {
-            convertView = inflater.inflate(R.layout.item_image_cell, parent, false);
-            holder = new ViewHolder(convertView);
-            convertView.setTag(holder);
-        } else {
-            holder = (ViewHolder) convertView.getTag();
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        long bindStart = metrics.begin(PerformanceMetrics.Stage.BIND);
+        try {
+            bindItem(holder, position);
+        } finally {
+            metrics.end(PerformanceMetrics.Stage.BIND, bindStart);
         }
+    }
 
-        final PageItem item = pageItems.get(position);
+    private void bindItem(ViewHolder holder, int position) {
+        PageItem item = pageItems.get(position);
 
-        int parentWidth = parent.getWidth();
-        int cellSize = parentWidth > 0 ? Math.max(120, parentWidth / columnCount) : CELL_SIZE;
-        convertView.setLayoutParams(new AbsListView.LayoutParams(cellSize, cellSize));
+        int cellSize = getCellSize();
+        ViewGroup.LayoutParams params = holder.itemView.getLayoutParams();
+        if (params.height != cellSize) {
+            params.height = cellSize;
+            holder.itemView.setLayoutParams(params);
+        }
 
         if (item.isPlaceholder()) {
+            Picasso.get().cancelRequest(holder.imageView);
             holder.placeholderLabel.setVisibility(View.VISIBLE);
             holder.imageView.setImageDrawable(null);
         } else if (item.getUri() != null) {
             holder.placeholderLabel.setVisibility(View.GONE);
+            metrics.add(PerformanceMetrics.Counter.IMAGES, 1);
+            // La miniatura ya recortada sale de la caché en disco; la original solo se decodifica la primera vez.
+            // La caché en memoria de Picasso es la BitmapCache compartida con la exportación
+            MemoryHitCallback callback = new MemoryHitCallback();
             Picasso.get()
-                    .load(item.getUri())
-                    .resize(cellSize, cellSize)
-                    .centerCrop()
+                    .load(ThumbnailDiskCache.thumbnailUri(item.getUri(), cellSize))
                     .placeholder(android.R.drawable.ic_menu_gallery)
                     .error(android.R.drawable.ic_menu_report_image)
-                    .into(holder.imageView);
+                    .into(holder.imageView, callback);
+            callback.requested = true;
+            if (callback.memoryHit) {
+                metrics.add(PerformanceMetrics.Counter.CACHE_HITS, 1);
+            }
         } else {
+            Picasso.get().cancelRequest(holder.imageView);
             holder.placeholderLabel.setVisibility(View.GONE);
             holder.imageView.setImageDrawable(null);
         }
 
-        holder.selectionOverlay.setVisibility(isSelected(position) ? View.VISIBLE : View.GONE);
-        holder.iconCheck.setVisibility(isSelected(position) ? View.VISIBLE : View.GONE);
+        bindSelection(holder, position);
+        bindUnreadable(holder, item);
+    }
 
-        convertView.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                if (!selectedPositions.isEmpty()) {
-                    toggleSelection(position, v);
-                } else if (onImageClickListener != null) {
-                    onImageClickListener.onImageClick(item, position);
-                }
+    /**
+     * Marca una imagen como ilegible y actualiza las celdas visibles que la muestran.
+     * @param uri URI que no se pudo leer
+     */
+    public void markUnreadable(Uri uri) {
+        if (!unreadableUris.add(uri)) {
+            return;
+        }
+        for (int i = 0; i < pageItems.size(); i++) {
+            if (uri.equals(pageItems.get(i).getUri())) {
+                notifyItemChanged(i, PAYLOAD_UNREADABLE);
             }
-        });
+        }
+    }
 
-        convertView.setOnLongClickListener(new View.OnLongClickListener() {
-            @Override
-            public boolean onLongClick(View v) {
-                toggleSelection(position, v);
-                return true;
-            }
-        });
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        recyclerView.addOnLayoutChangeListener(widthListener);
+    }
 
-        return convertView;
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnLayoutChangeListener(widthListener);
+        this.recyclerView = null;
     }
 
-    public void toggleSelection(int position, View view) {
-        if (selectedPositions.contains(position)) {
-            selectedPositions.remove(position);
-        } else {
-            selectedPositions.add(position);
+    public void toggleSelection(int position) {
+        selectedPositions.flip(position);
+        selectionAnchor = selectedPositions.get(position) ? position : RecyclerView.NO_POSITION;
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        notifySelectionListener();
+    }
+
+    /**
+     * Selecciona todos los espacios de la página.
+     */
+    public void selectAll() {
+        if (pageItems.isEmpty()) {
+            return;
         }
+        selectedPositions.set(0, pageItems.size());
+        notifyItemRangeChanged(0, pageItems.size(), PAYLOAD_SELECTION);
         notifySelectionListener();
+    }
 
-        // Update visual state directly to avoid full refresh delay
-        if (view != null) {
-            ViewHolder holder = (ViewHolder) view.getTag();
-            if (holder != null) {
-                boolean isSelected = isSelected(position);
-                holder.selectionOverlay.setVisibility(isSelected ? View.VISIBLE : View.GONE);
-                holder.iconCheck.setVisibility(isSelected ? View.VISIBLE : View.GONE);
-            }
+    /**
+     * Agrega a la selección todas las posiciones entre dos extremos, ambos incluidos.
+     * @param from Uno de los extremos
+     * @param to El otro extremo
+     */
+    public void selectRange(int from, int to) {
+        int start = Math.max(0, Math.min(from, to));
+        int end = Math.min(pageItems.size(), Math.max(from, to) + 1);
+        if (start >= end) {
+            return;
         }
+        selectedPositions.set(start, end);
+        selectionAnchor = to;
+        notifyItemRangeChanged(start, end - start, PAYLOAD_SELECTION);
+        notifySelectionListener();
     }
 
     public void clearSelection() {
         if (!selectedPositions.isEmpty()) {
+            notifySelectionRuns();
             selectedPositions.clear();
+            selectionAnchor = RecyclerView.NO_POSITION;
             notifySelectionListener();
         }
     }
@@ -176,12 +329,87 @@ public class ImageGridAdapter extends BaseAdapter {
         return !selectedPositions.isEmpty();
     }
 
-    public List<Integer> getSelectedPositions() {
-        return new ArrayList<>(selectedPositions);
+    /**
+     * Posiciones seleccionadas, listas para {@link upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage#removePositions(BitSet)}.
+     * @return Copia del conjunto de posiciones
+     */
+    public BitSet getSelectedPositions() {
+        return (BitSet) selectedPositions.clone();
     }
 
     private boolean isSelected(int position) {
-        return selectedPositions.contains(position);
+        return selectedPositions.get(position);
+    }
+
+    /**
+     * Tiempo de enlace de celdas ({@link PerformanceMetrics.Stage#BIND}), imágenes solicitadas y
+     * aciertos de caché desde que se creó el adaptador. Es acierto la miniatura tomada de memoria o
+     * de {@link ThumbnailDiskCache}; es fallo la que obligó a decodificar la imagen original.
+     * @return Métricas de la cuadrícula
+     */
+    public PerformanceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Lado en píxeles de las celdas con el ancho y las columnas actuales.
+     * @return Tamaño usado para pedir las miniaturas
+     */
+    public int getCellSize() {
+        return PageLayoutEngine.previewCellSize(getAvailableWidth(), columnCount, CELL_SIZE);
+    }
+
+    private int getAvailableWidth() {
+        if (recyclerView == null) {
+            return 0;
+        }
+        return recyclerView.getWidth() - recyclerView.getPaddingLeft() - recyclerView.getPaddingRight();
+    }
+
+    private void bindUnreadable(ViewHolder holder, PageItem item) {
+        boolean unreadable = !item.isPlaceholder() && item.getUri() != null && unreadableUris.contains(item.getUri());
+        holder.unreadableLabel.setVisibility(unreadable ? View.VISIBLE : View.GONE);
+    }
+
+    private void bindSelection(ViewHolder holder, int position) {
+        boolean selected = isSelected(position);
+        holder.selectionOverlay.setVisibility(selected ? View.VISIBLE : View.GONE);
+        holder.iconCheck.setVisibility(selected ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Traslada las posiciones seleccionadas a la nueva lista; las de elementos eliminados se descartan.
+     */
+    private void remapSelection(DiffUtil.DiffResult diff, int oldSize) {
+        if (selectedPositions.isEmpty()) {
+            return;
+        }
+        BitSet remapped = new BitSet(pageItems.size());
+        for (int oldPosition = selectedPositions.nextSetBit(0); oldPosition >= 0 && oldPosition < oldSize;
+             oldPosition = selectedPositions.nextSetBit(oldPosition + 1)) {
+            int newPosition = diff.convertOldPositionToNew(oldPosition);
+            if (newPosition != DiffUtil.DiffResult.NO_POSITION) {
+                remapped.set(newPosition);
+            }
+        }
+        selectionAnchor = selectionAnchor != RecyclerView.NO_POSITION && selectionAnchor < oldSize
+            ? diff.convertOldPositionToNew(selectionAnchor) : RecyclerView.NO_POSITION;
+        selectedPositions = remapped;
+        if (remapped.isEmpty()) {
+            notifySelectionListener();
+        }
+    }
+
+    /**
+     * Notifica cada tramo contiguo de posiciones seleccionadas con una sola llamada.
+     */
+    private void notifySelectionRuns() {
+        for (int start = selectedPositions.nextSetBit(0); start >= 0;
+             start = selectedPositions.nextSetBit(start)) {
+            int end = selectedPositions.nextClearBit(start);
+            notifyItemRangeChanged(start, end - start, PAYLOAD_SELECTION);
+            start = end;
+        }
     }
 
     private void notifySelectionListener() {
@@ -190,15 +418,71 @@ public class ImageGridAdapter extends BaseAdapter {
         }
     }
 
-    private static class ViewHolder {
+    /**
+     * Compara dos versiones de la página por identificador. Un {@link PageItem} es inmutable,
+     * así que si el identificador coincide el contenido también.
+     */
+    private static class ItemDiff extends DiffUtil.Callback {
+        private final List<PageItem> oldItems;
+        private final List<PageItem> newItems;
+
+        ItemDiff(List<PageItem> oldItems, List<PageItem> newItems) {
+            this.oldItems = oldItems;
+            this.newItems = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldItems.get(oldPosition).getId() == newItems.get(newPosition).getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return true;
+        }
+    }
+
+    /**
+     * Picasso invoca onSuccess dentro de {@code into()} solo cuando la miniatura estaba en memoria;
+     * las cargas asíncronas ya las contó {@link ThumbnailDiskCache}.
+     */
+    private static class MemoryHitCallback implements Callback {
+        boolean requested;
+        boolean memoryHit;
+
+        @Override
+        public void onSuccess() {
+            memoryHit = !requested;
+        }
+
+        @Override
+        public void onError(Exception e) {
+            // El error ya se muestra con el drawable de error
+        }
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
         final ImageView imageView;
         final TextView placeholderLabel;
+        final TextView unreadableLabel;
         final View selectionOverlay;
         final ImageView iconCheck;
 
         ViewHolder(View root) {
+            super(root);
             imageView = root.findViewById(R.id.image_content);
             placeholderLabel = root.findViewById(R.id.placeholder_label);
+            unreadableLabel = root.findViewById(R.id.unreadable_label);
             selectionOverlay = root.findViewById(R.id.selection_overlay);
             iconCheck = root.findViewById(R.id.icon_check);
         }
@@ -1,50 +1,111 @@
 package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models;
 
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
 /**
  * Clase que representa los metadatos de una imagen
- * Almacena información sobre fecha, ancho y largo de imágenes seleccionadas
+ * Almacena fecha de captura, ancho, alto y orientación ya convertidos a tipos primitivos,
+ * de modo que ordenar o calcular proporciones no vuelve a interpretar texto EXIF
  */
 public class ImageMetadata {
-    private String dateTime;
-    private String width;
-    private String height;
+
+    /** Valor de fecha cuando la imagen no la incluye */
+    public static final long UNKNOWN_TIME = Long.MIN_VALUE;
+    /** Valor de ancho o alto cuando no se conoce */
+    public static final int UNKNOWN_DIMENSION = -1;
+    /** Orientación EXIF sin rotación (ExifInterface.ORIENTATION_NORMAL) */
+    public static final int ORIENTATION_NORMAL = 1;
+
+    private static final String UNKNOWN_TEXT = "Unknown";
+    private static final String DISPLAY_DATE_PATTERN = "yyyy:MM:dd HH:mm:ss";
+
+    private final long captureTime;
+    private final int width;
+    private final int height;
+    private final int orientation;
 
     /**
      * Constructor para crear objeto de metadatos de imagen
-     * @param dateTime Fecha y hora de captura de la imagen
-     * @param width Ancho de la imagen en píxeles
-     * @param height Alto de la imagen en píxeles
+     * @param captureTime Fecha y hora de captura en milisegundos desde epoch, o {@link #UNKNOWN_TIME}
+     * @param width Ancho de la imagen en píxeles, o {@link #UNKNOWN_DIMENSION}
+     * @param height Alto de la imagen en píxeles, o {@link #UNKNOWN_DIMENSION}
+     * @param orientation Orientación EXIF (1 a 8)
+     */
+    public ImageMetadata(long captureTime, int width, int height, int orientation) {
+        this.captureTime = captureTime;
+        this.width = width > 0 ? width : UNKNOWN_DIMENSION;
+        this.height = height > 0 ? height : UNKNOWN_DIMENSION;
+        this.orientation = orientation >= 1 && orientation <= 8 ? orientation : ORIENTATION_NORMAL;
+    }
+
+    /**
+     * @return Metadatos sin ningún dato conocido
      */
-    public ImageMetadata(String dateTime, String width, String height) {
-        this.dateTime = dateTime;
-        this.width = width;
-        this.height = height;
+    public static ImageMetadata unknown() {
+        return new ImageMetadata(UNKNOWN_TIME, UNKNOWN_DIMENSION, UNKNOWN_DIMENSION, ORIENTATION_NORMAL);
     }
 
-    // Getters y setters para los metadatos de la imagen
-    
-    public String getDateTime() {
-        return dateTime;
+    /**
+     * @return Fecha de captura en milisegundos desde epoch, o {@link #UNKNOWN_TIME}
+     */
+    public long getCaptureTime() {
+        return captureTime;
     }
 
-    public void setDateTime(String dateTime) {
-        this.dateTime = dateTime;
+    public boolean hasCaptureTime() {
+        return captureTime != UNKNOWN_TIME;
     }
 
-    public String getWidth() {
+    /**
+     * @return Ancho almacenado en el archivo, sin aplicar la orientación
+     */
+    public int getWidth() {
         return width;
     }
 
-    public void setWidth(String width) {
-        this.width = width;
+    /**
+     * @return Alto almacenado en el archivo, sin aplicar la orientación
+     */
+    public int getHeight() {
+        return height;
     }
 
-    public String getHeight() {
-        return height;
+    public boolean hasDimensions() {
+        return width != UNKNOWN_DIMENSION && height != UNKNOWN_DIMENSION;
     }
 
-    public void setHeight(String height) {
-        this.height = height;
+    public int getOrientation() {
+        return orientation;
+    }
+
+    /**
+     * @return true si la orientación intercambia ancho y alto (rotaciones de 90 y 270 grados)
+     */
+    public boolean isTransposed() {
+        return orientation >= 5;
+    }
+
+    /**
+     * @return Ancho con el que se ve la imagen una vez aplicada la orientación
+     */
+    public int getDisplayWidth() {
+        return isTransposed() ? height : width;
+    }
+
+    /**
+     * @return Alto con el que se ve la imagen una vez aplicada la orientación
+     */
+    public int getDisplayHeight() {
+        return isTransposed() ? width : height;
+    }
+
+    /**
+     * @return Proporción ancho/alto como se ve la imagen, o 0 si no se conocen las dimensiones
+     */
+    public float getAspectRatio() {
+        return hasDimensions() ? getDisplayWidth() / (float) getDisplayHeight() : 0f;
     }
 
     /**
@@ -53,8 +114,12 @@ public class ImageMetadata {
      */
     @Override
     public String toString() {
-        return "DateTime: " + dateTime + 
-               "\nWidth: " + width + 
-               "\nHeight: " + height;
+        String dateTime = hasCaptureTime()
+            ? new SimpleDateFormat(DISPLAY_DATE_PATTERN, Locale.US).format(new Date(captureTime))
+            : UNKNOWN_TEXT;
+        return "DateTime: " + dateTime +
+               "\nWidth: " + (width != UNKNOWN_DIMENSION ? String.valueOf(width) : UNKNOWN_TEXT) +
+               "\nHeight: " + (height != UNKNOWN_DIMENSION ? String.valueOf(height) : UNKNOWN_TEXT) +
+               "\nOrientation: " + orientation;
     }
 }
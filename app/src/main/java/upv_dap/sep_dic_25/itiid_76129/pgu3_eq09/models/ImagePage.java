@@ -1,28 +1,72 @@
 package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models;
 
 import android.net.Uri;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
 
 /**
  * Manages the content and layout metadata for a logical page inside the PDF composer.
+ * Slots are kept in an indexed list so duplicate checks, placeholder lookups and image
+ * counts stay constant time no matter how many slots the page holds.
  */
 public class ImagePage {
 
     private static final int DEFAULT_COLUMNS = 3;
 
-    private final List<PageItem> items = new ArrayList<>();
+    private final SlotList items = new SlotList();
     private int rows = 1;
     private int columns = DEFAULT_COLUMNS;
     private boolean layoutCustomized = false;
+    // Content restored lazily: until the first access only the stored counters are known
+    private SlotLoader pendingSlots;
+    private int pendingSlotCount;
+    private int pendingImageCount;
+
+    /**
+     * Supplies the slots of a restored page the first time they are needed.
+     */
+    public interface SlotLoader {
+        /**
+         * @return slots in display order; an empty list when the stored content is unreadable
+         */
+        List<PageItem> loadSlots();
+    }
+
+    /**
+     * Creates a page whose layout and counters are known up front while its slots are read
+     * on first access, so opening a large project does not parse every page.
+     * @param rows stored row count
+     * @param columns stored column count
+     * @param layoutCustomized whether the user chose the layout explicitly
+     * @param slotCount stored slot count, reported until the slots are loaded
+     * @param imageCount stored image count, reported until the slots are loaded
+     * @param loader source of the slots
+     * @return page pending to load
+     */
+    public static ImagePage restored(int rows, int columns, boolean layoutCustomized,
+                                     int slotCount, int imageCount, SlotLoader loader) {
+        ImagePage page = new ImagePage();
+        page.rows = Math.max(1, rows);
+        page.columns = Math.max(1, columns);
+        page.layoutCustomized = layoutCustomized;
+        page.pendingSlotCount = slotCount;
+        page.pendingImageCount = imageCount;
+        page.pendingSlots = loader;
+        return page;
+    }
 
     /**
      * Registers an image inside the page, replacing the first placeholder when available.
      * @param uri image URI chosen by the user
      */
     public void addImage(Uri uri) {
+        ensureLoaded();
         if (uri == null || containsUri(uri)) {
             return;
         }
@@ -41,30 +85,27 @@ public class ImagePage {
      * Inserts an explicit placeholder so the user can reserve empty space inside the grid.
      */
     public void addPlaceholder() {
+        ensureLoaded();
         items.add(PageItem.placeholder());
     }
 
     /**
-     * Removes multiple positions from the page. Positions must be zero based.
-     * @param positions list of adapter positions to remove
+     * Removes multiple positions from the page in a single compaction pass.
+     * @param positions zero based adapter positions to remove; bits beyond the last slot are ignored
      */
-    public void removePositions(List<Integer> positions) {
+    public void removePositions(BitSet positions) {
         if (positions == null || positions.isEmpty()) {
             return;
         }
-
-        positions.sort(Comparator.reverseOrder());
-        for (int position : positions) {
-            if (position >= 0 && position < items.size()) {
-                items.remove(position);
-            }
-        }
+        ensureLoaded();
+        items.removeAll(positions);
     }
 
     /**
      * Eliminates all items contained on the page.
      */
     public void clear() {
+        pendingSlots = null;
         items.clear();
         rows = 1;
         columns = DEFAULT_COLUMNS;
@@ -76,6 +117,7 @@ public class ImagePage {
      * @return unmodifiable list of page items
      */
     public List<PageItem> getItems() {
+        ensureLoaded();
         return Collections.unmodifiableList(items);
     }
 
@@ -84,6 +126,7 @@ public class ImagePage {
      * @return mutable list of page items
      */
     public List<PageItem> getMutableItems() {
+        ensureLoaded();
         return items;
     }
 
@@ -92,13 +135,7 @@ public class ImagePage {
      * @return number of actual images
      */
     public int getImageCount() {
-        int count = 0;
-        for (PageItem item : items) {
-            if (!item.isPlaceholder()) {
-                count++;
-            }
-        }
-        return count;
+        return pendingSlots != null ? pendingImageCount : items.imageCount;
     }
 
     /**
@@ -106,7 +143,23 @@ public class ImagePage {
      * @return number of items currently tracked
      */
     public int getTotalSlots() {
-        return items.size();
+        return pendingSlots != null ? pendingSlotCount : items.size();
+    }
+
+    /**
+     * Counter bumped by every slot mutation, used to detect pages that changed since the last save.
+     * Layout changes are not counted because they are stored apart from the slots.
+     * @return current slot revision
+     */
+    public long getRevision() {
+        return items.revision;
+    }
+
+    /**
+     * @return false while the slots of a restored page have not been read yet
+     */
+    public boolean isLoaded() {
+        return pendingSlots == null;
     }
 
     /**
@@ -132,30 +185,181 @@ public class ImagePage {
         return layoutCustomized;
     }
 
+    /**
+     * Creates a detached copy of the page so background work can read it while the UI keeps editing.
+     * A restored page that has not been read yet is copied without touching the disk; the copy reads
+     * the same stored slots on first access.
+     * @return page with the same slots and layout
+     */
+    public ImagePage copy() {
+        if (pendingSlots != null) {
+            return restored(rows, columns, layoutCustomized, pendingSlotCount, pendingImageCount, pendingSlots);
+        }
+        ImagePage copy = new ImagePage();
+        copy.items.addAll(items);
+        copy.rows = rows;
+        copy.columns = columns;
+        copy.layoutCustomized = layoutCustomized;
+        return copy;
+    }
+
     /**
      * Calculates the minimum amount of rows required to host all items with the current column count.
      * @return effective row count when rendering
      */
     public int getEffectiveRows() {
-        int required = (int) Math.ceil(items.size() / (double) Math.max(1, columns));
+        int required = (getTotalSlots() + columns - 1) / columns;
         return Math.max(rows, Math.max(1, required));
     }
 
-    private int findFirstPlaceholderIndex() {
-        for (int i = 0; i < items.size(); i++) {
-            if (items.get(i).isPlaceholder()) {
-                return i;
-            }
+    private void ensureLoaded() {
+        if (pendingSlots == null) {
+            return;
         }
-        return -1;
+        SlotLoader loader = pendingSlots;
+        pendingSlots = null;
+        long revision = items.revision;
+        items.addAll(loader.loadSlots());
+        // Loading is not an edit, so the page stays clean
+        items.revision = revision;
+    }
+
+    private int findFirstPlaceholderIndex() {
+        return items.placeholderPositions.nextSetBit(0);
     }
 
     private boolean containsUri(Uri uri) {
-        for (PageItem item : items) {
-            if (!item.isPlaceholder() && uri.equals(item.getUri())) {
-                return true;
+        return items.uriCounts.containsKey(uri);
+    }
+
+    /**
+     * Slot list that keeps a URI index, the ordered placeholder positions and the image counter
+     * in sync with every mutation, including the ones performed by adapters through
+     * {@link #getMutableItems()}.
+     */
+    private static class SlotList extends AbstractList<PageItem> implements RandomAccess {
+
+        private final ArrayList<PageItem> slots = new ArrayList<>();
+        private final Map<Uri, Integer> uriCounts = new HashMap<>();
+        private final BitSet placeholderPositions = new BitSet();
+        private int imageCount;
+        private long revision;
+
+        @Override
+        public PageItem get(int index) {
+            return slots.get(index);
+        }
+
+        @Override
+        public int size() {
+            return slots.size();
+        }
+
+        @Override
+        public PageItem set(int index, PageItem item) {
+            PageItem previous = slots.set(index, item);
+            unindex(previous, index);
+            index(item, index);
+            revision++;
+            return previous;
+        }
+
+        @Override
+        public void add(int index, PageItem item) {
+            if (index < slots.size()) {
+                shiftPlaceholdersRight(index);
+            }
+            slots.add(index, item);
+            index(item, index);
+            modCount++;
+            revision++;
+        }
+
+        @Override
+        public PageItem remove(int index) {
+            PageItem removed = slots.remove(index);
+            unindex(removed, index);
+            shiftPlaceholdersLeft(index + 1);
+            modCount++;
+            revision++;
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            slots.clear();
+            uriCounts.clear();
+            placeholderPositions.clear();
+            imageCount = 0;
+            modCount++;
+            revision++;
+        }
+
+        /**
+         * Removes every flagged slot by sliding the survivors down in one pass, so deleting
+         * k slots from a page of n costs O(n) instead of O(n·k).
+         */
+        void removeAll(BitSet positions) {
+            int size = slots.size();
+            int write = positions.nextSetBit(0);
+            if (write < 0 || write >= size) {
+                return;
+            }
+            for (int read = write; read < size; read++) {
+                PageItem item = slots.get(read);
+                if (positions.get(read)) {
+                    unindex(item, read);
+                    continue;
+                }
+                if (item.isPlaceholder()) {
+                    placeholderPositions.clear(read);
+                    placeholderPositions.set(write);
+                }
+                slots.set(write++, item);
+            }
+            slots.subList(write, size).clear();
+            modCount++;
+            revision++;
+        }
+
+        private void index(PageItem item, int position) {
+            if (item.isPlaceholder()) {
+                placeholderPositions.set(position);
+                return;
+            }
+            imageCount++;
+            if (item.getUri() != null) {
+                uriCounts.merge(item.getUri(), 1, Integer::sum);
+            }
+        }
+
+        private void unindex(PageItem item, int position) {
+            if (item.isPlaceholder()) {
+                placeholderPositions.clear(position);
+                return;
+            }
+            imageCount--;
+            Uri uri = item.getUri();
+            if (uri != null) {
+                uriCounts.computeIfPresent(uri, (key, count) -> count > 1 ? count - 1 : null);
+            }
+        }
+
+        private void shiftPlaceholdersRight(int fromPosition) {
+            // Walk downwards so a position is never overwritten before it has moved
+            for (int position = placeholderPositions.length() - 1; position >= fromPosition;
+                 position = placeholderPositions.previousSetBit(position - 1)) {
+                placeholderPositions.clear(position);
+                placeholderPositions.set(position + 1);
+            }
+        }
+
+        private void shiftPlaceholdersLeft(int fromPosition) {
+            for (int position = placeholderPositions.nextSetBit(fromPosition); position >= 0;
+                 position = placeholderPositions.nextSetBit(position + 1)) {
+                placeholderPositions.clear(position);
+                placeholderPositions.set(position - 1);
             }
         }
-        return false;
     }
 }
@@ -2,16 +2,21 @@ package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models;
 
 import android.net.Uri;
 import androidx.annotation.Nullable;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents a single slot in a page, either holding an image URI or a blank placeholder.
  */
 public class PageItem {
 
+    private static final AtomicLong NEXT_ID = new AtomicLong();
+
+    private final long id;
     private final Uri uri;
     private final boolean placeholder;
 
     private PageItem(@Nullable Uri uri, boolean placeholder) {
+        this.id = NEXT_ID.getAndIncrement();
         this.uri = uri;
         this.placeholder = placeholder;
     }
@@ -33,6 +38,14 @@ public class PageItem {
         return new PageItem(null, true);
     }
 
+    /**
+     * Identifier unique to this slot for the lifetime of the process, used as a stable adapter id.
+     * @return slot identifier
+     */
+    public long getId() {
+        return id;
+    }
+
     /**
      * Indicates whether this slot references a blank placeholder.
      * @return true when slot is intentionally empty
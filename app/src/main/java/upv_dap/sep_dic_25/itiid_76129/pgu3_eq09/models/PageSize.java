@@ -0,0 +1,49 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models;
+
+/**
+ * Page formats supported by the PDF export, expressed in PDF points (1/72 inch).
+ */
+public enum PageSize {
+    LETTER(612, 792, "carta"),
+    LEGAL(612, 1008, "oficio");
+
+    private final int width;
+    private final int height;
+    private final String suffix;
+
+    PageSize(int width, int height, String suffix) {
+        this.width = width;
+        this.height = height;
+        this.suffix = suffix;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Width of the rendered page for a given pixel density.
+     * @param pixelsPerPoint pixels rendered per PDF point
+     * @return width in pixels
+     */
+    public int getPixelWidth(float pixelsPerPoint) {
+        return Math.round(width * pixelsPerPoint);
+    }
+
+    /**
+     * Height of the rendered page for a given pixel density.
+     * @param pixelsPerPoint pixels rendered per PDF point
+     * @return height in pixels
+     */
+    public int getPixelHeight(float pixelsPerPoint) {
+        return Math.round(height * pixelsPerPoint);
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+}
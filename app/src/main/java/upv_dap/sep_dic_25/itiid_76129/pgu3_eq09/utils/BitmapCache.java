@@ -0,0 +1,162 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.squareup.picasso.Cache;
+import java.util.Map;
+
+/**
+ * Caché LRU de bitmaps decodificados compartida por toda la aplicación.
+ * La usan tanto la cuadrícula (a través de Picasso) como la exportación a PDF;
+ * las entradas se identifican por URI, tamaño objetivo y formato del bitmap.
+ * Los bitmaps de exportación desalojados pasan a {@link BitmapPool} para reutilizarse.
+ * Un bitmap que ocupa más de una cuarta parte de la caché no se guarda, para que una sola
+ * imagen de exportación grande no desaloje todas las miniaturas de la cuadrícula.
+ */
+public class BitmapCache {
+
+    private static final String TAG = "BitmapCache";
+    private static final int HEAP_FRACTION = 8;
+    private static final int MAX_ENTRY_FRACTION = 4;
+    private static final String PICASSO_PREFIX = "picasso:";
+
+    private static BitmapCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+
+    private BitmapCache(int maxBytes) {
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, @NonNull String key, @NonNull Bitmap oldValue,
+                                        @Nullable Bitmap newValue) {
+                // Las miniaturas de Picasso pueden seguir en pantalla; solo se reutilizan las de exportación
+                if (!key.startsWith(PICASSO_PREFIX) && oldValue != newValue) {
+                    BitmapPool.getInstance().put(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * Obtiene la instancia única, limitada a una octava parte del heap.
+     * @return Caché compartida
+     */
+    public static synchronized BitmapCache getInstance() {
+        if (instance == null) {
+            long maxBytes = Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+            instance = new BitmapCache((int) Math.min(Integer.MAX_VALUE, maxBytes));
+        }
+        return instance;
+    }
+
+    /**
+     * Construye la llave de una imagen decodificada para un tamaño objetivo.
+     * @param uri URI de la imagen
+     * @param width Ancho objetivo
+     * @param height Alto objetivo
+     * @param config Formato de los píxeles
+     * @return Llave de caché
+     */
+    public static String keyFor(Uri uri, int width, int height, Bitmap.Config config) {
+        return uri.toString() + '@' + width + 'x' + height + '/' + config.name();
+    }
+
+    @Nullable
+    public Bitmap get(Uri uri, int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = cache.get(keyFor(uri, width, height, config));
+        return bitmap != null && !bitmap.isRecycled() ? bitmap : null;
+    }
+
+    /**
+     * Guarda un bitmap de exportación si cabe en la caché sin desplazar a las demás entradas.
+     * @return false si el bitmap es demasiado grande y no se guardó; sigue perteneciendo al llamador
+     */
+    public boolean put(Uri uri, int width, int height, Bitmap.Config config, Bitmap bitmap) {
+        if (!fits(bitmap)) {
+            return false;
+        }
+        cache.put(keyFor(uri, width, height, config), bitmap);
+        return true;
+    }
+
+    /**
+     * Libera memoria según el nivel informado por el sistema en onTrimMemory.
+     * @param level Nivel de {@link ComponentCallbacks2}
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+            || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+            || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.size() / 2);
+        }
+        BitmapPool.getInstance().trimMemory(level);
+        Log.d(TAG, "Trimmed to " + cache.size() + " bytes for level " + level);
+    }
+
+    public void clear() {
+        cache.evictAll();
+    }
+
+    private boolean fits(Bitmap bitmap) {
+        return bitmap.getAllocationByteCount() <= cache.maxSize() / MAX_ENTRY_FRACTION;
+    }
+
+    /**
+     * Expone esta caché como caché en memoria de Picasso para que la cuadrícula
+     * comparta el mismo presupuesto y política de desalojo que la exportación.
+     * @return Adaptador para {@link com.squareup.picasso.Picasso.Builder#memoryCache(Cache)}
+     */
+    public Cache asPicassoCache() {
+        return new Cache() {
+            @Override
+            public Bitmap get(String key) {
+                return cache.get(PICASSO_PREFIX + key);
+            }
+
+            @Override
+            public void set(String key, Bitmap bitmap) {
+                // Picasso sigue mostrando el bitmap aunque no quede en caché
+                if (fits(bitmap)) {
+                    cache.put(PICASSO_PREFIX + key, bitmap);
+                }
+            }
+
+            @Override
+            public int size() {
+                return cache.size();
+            }
+
+            @Override
+            public int maxSize() {
+                return cache.maxSize();
+            }
+
+            @Override
+            public void clear() {
+                cache.evictAll();
+            }
+
+            @Override
+            public void clearKeyUri(String keyPrefix) {
+                String prefix = PICASSO_PREFIX + keyPrefix;
+                for (Map.Entry<String, Bitmap> entry : cache.snapshot().entrySet()) {
+                    if (entry.getKey().startsWith(prefix)) {
+                        cache.remove(entry.getKey());
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Clase utilitaria para decodificar imágenes directamente al tamaño en que se van a dibujar.
+ * Lee primero las dimensiones del encabezado y después decodifica con submuestreo y escalado
+ * en el propio decodificador, de modo que solo existe un bitmap del tamaño final por imagen.
+ * Cuando hay un {@link BitmapPool} disponible, la decodificación reutiliza uno de sus bitmaps.
+ */
+public class BitmapDecoder {
+
+    private static final String TAG = "BitmapDecoder";
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Lee únicamente las dimensiones de la imagen sin reservar memoria para los píxeles.
+     * @param resolver ContentResolver para abrir la URI
+     * @param uri URI de la imagen
+     * @return Arreglo {ancho, alto} o null si no se pudo leer el encabezado
+     * @throws IOException si no se pudo abrir la URI
+     */
+    @Nullable
+    public static int[] readBounds(ContentResolver resolver, Uri uri) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                return null;
+            }
+            BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        return new int[]{options.outWidth, options.outHeight};
+    }
+
+    /**
+     * Calcula el mayor factor de submuestreo (potencia de 2) que mantiene la imagen
+     * igual o más grande que el tamaño solicitado.
+     * @param sourceWidth Ancho original
+     * @param sourceHeight Alto original
+     * @param targetWidth Ancho requerido
+     * @param targetHeight Alto requerido
+     * @return Valor para {@link BitmapFactory.Options#inSampleSize}
+     */
+    public static int calculateInSampleSize(int sourceWidth, int sourceHeight, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth
+            && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decodifica la imagen al tamaño objetivo en un solo paso.
+     * Si la imagen es más pequeña que el objetivo se decodifica a su tamaño natural y
+     * el ampliado se deja al dibujado sobre el Canvas.
+     * El resultado queda fijado en el pool; el llamador debe liberarlo con {@link BitmapPool#unpin(Bitmap)}.
+     * @param resolver ContentResolver para abrir la URI
+     * @param uri URI de la imagen
+     * @param sourceWidth Ancho original obtenido con {@link #readBounds}
+     * @param sourceHeight Alto original obtenido con {@link #readBounds}
+     * @param targetWidth Ancho final deseado
+     * @param targetHeight Alto final deseado
+     * @param config Formato de píxeles del resultado
+     * @param pool Pool del que se toma el bitmap a reutilizar
+     * @return Bitmap decodificado o null si el formato no es soportado
+     * @throws IOException si no se pudo abrir la URI
+     */
+    @Nullable
+    public static Bitmap decodeToSize(ContentResolver resolver, Uri uri, int sourceWidth, int sourceHeight,
+                                      int targetWidth, int targetHeight, Bitmap.Config config,
+                                      BitmapPool pool) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = config;
+        options.inSampleSize = calculateInSampleSize(sourceWidth, sourceHeight, targetWidth, targetHeight);
+        options.inMutable = true;
+
+        int sampledWidth = sourceWidth / options.inSampleSize;
+        int sampledHeight = sourceHeight / options.inSampleSize;
+        int outputWidth = sampledWidth;
+        int outputHeight = sampledHeight;
+        if (sampledWidth > targetWidth) {
+            // El decodificador aplica el escalado restante; así no hace falta createScaledBitmap
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = targetWidth;
+            outputWidth = targetWidth;
+            outputHeight = Math.round(sampledHeight * (targetWidth / (float) sampledWidth));
+        }
+
+        // Margen de una fila y columna por el redondeo del decodificador
+        int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+        int requiredBytes = (outputWidth + 1) * (outputHeight + 1) * bytesPerPixel;
+        Bitmap reusable = pool.get(requiredBytes);
+        options.inBitmap = reusable;
+
+        Bitmap bitmap = null;
+        try {
+            bitmap = decodeStream(resolver, uri, options);
+        } catch (IllegalArgumentException e) {
+            // El bitmap del pool no fue compatible; se decodifica en uno nuevo
+            Log.w(TAG, "Reusable bitmap rejected for " + uri, e);
+            options.inBitmap = null;
+            bitmap = decodeStream(resolver, uri, options);
+        } finally {
+            if (reusable != null && bitmap != reusable) {
+                pool.put(reusable);
+            }
+        }
+
+        if (bitmap != null) {
+            pool.pinDecoded(bitmap);
+        }
+        return bitmap;
+    }
+
+    @Nullable
+    private static Bitmap decodeStream(ContentResolver resolver, Uri uri, BitmapFactory.Options options)
+            throws IOException {
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                return null;
+            }
+            return BitmapFactory.decodeStream(inputStream, null, options);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+/**
+ * Presupuesto de bytes de bitmaps en vuelo compartido entre los hilos de exportación.
+ * Quien reserva se bloquea hasta que haya espacio, lo que aplica contrapresión a la decodificación.
+ */
+public class BitmapMemoryBudget {
+
+    private final long maxBytes;
+    private long inFlightBytes;
+    private long peakBytes;
+
+    /**
+     * @param maxBytes Máximo de bytes que pueden estar reservados al mismo tiempo
+     */
+    public BitmapMemoryBudget(long maxBytes) {
+        this.maxBytes = Math.max(1, maxBytes);
+    }
+
+    /**
+     * Reserva bytes esperando a que se liberen si el presupuesto está lleno.
+     * Una reserva mayor que el presupuesto completo se concede cuando no hay nada más en vuelo.
+     * @param bytes Bytes a reservar
+     * @throws InterruptedException si el hilo se interrumpe mientras espera
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        while (inFlightBytes > 0 && inFlightBytes + bytes > maxBytes) {
+            wait();
+        }
+        inFlightBytes += bytes;
+        peakBytes = Math.max(peakBytes, inFlightBytes);
+    }
+
+    /**
+     * Devuelve bytes reservados previamente con {@link #acquire(long)}.
+     * @param bytes Bytes a liberar
+     */
+    public synchronized void release(long bytes) {
+        inFlightBytes = Math.max(0, inFlightBytes - bytes);
+        notifyAll();
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public synchronized long getPeakBytes() {
+        return peakBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,239 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Pool de bitmaps mutables agrupados por tamaño en bytes para alimentar
+ * {@link android.graphics.BitmapFactory.Options#inBitmap}.
+ * Los bitmaps en uso se "fijan" para que ningún otro hilo los reutilice mientras se dibujan;
+ * los que llegan al pool estando fijados se devuelven automáticamente al liberarse.
+ */
+public class BitmapPool {
+
+    private static final String TAG = "BitmapPool";
+    private static final int HEAP_FRACTION = 16;
+    // Se acepta un bitmap de hasta el doble de lo necesario para no desperdiciar memoria
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> buckets = new TreeMap<>();
+    private final Set<Bitmap> pooled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<Bitmap> lent = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Bitmaps libres cuyo contenido ya no corresponde a la imagen con la que estuvieron en caché
+    private final Set<Bitmap> overwritten = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<Bitmap, Integer> pins = new IdentityHashMap<>();
+    private final Set<Bitmap> returnOnUnpin = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long pooledBytes;
+
+    private long hits;
+    private long misses;
+    private long returns;
+    private long drops;
+
+    private BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Obtiene la instancia única, limitada a una dieciseisava parte del heap.
+     * @return Pool compartido
+     */
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / HEAP_FRACTION);
+        }
+        return instance;
+    }
+
+    /**
+     * Entrega un bitmap reutilizable con capacidad suficiente para la decodificación indicada.
+     * El llamador debe invocar {@link #pinDecoded(Bitmap)} con el resultado o {@link #put(Bitmap)}
+     * si la decodificación falla.
+     * @param requiredBytes Bytes que ocupará el bitmap decodificado
+     * @return Bitmap para inBitmap o null si no hay uno adecuado (se cuenta como fallo)
+     */
+    @Nullable
+    public synchronized Bitmap get(int requiredBytes) {
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = buckets.ceilingEntry(requiredBytes);
+        if (entry == null || entry.getKey() > (long) requiredBytes * MAX_SIZE_MULTIPLE) {
+            misses++;
+            return null;
+        }
+
+        Bitmap bitmap = entry.getValue().pollFirst();
+        if (entry.getValue().isEmpty()) {
+            buckets.remove(entry.getKey());
+        }
+        pooled.remove(bitmap);
+        overwritten.remove(bitmap);
+        pooledBytes -= bitmap.getAllocationByteCount();
+        lent.add(bitmap);
+        hits++;
+        return bitmap;
+    }
+
+    /**
+     * Devuelve un bitmap al pool. Si está fijado se devolverá al liberarse el último uso.
+     * @param bitmap Bitmap que ya no se necesita
+     */
+    public synchronized void put(Bitmap bitmap) {
+        boolean wasLent = lent.remove(bitmap);
+        if (pins.containsKey(bitmap)) {
+            returnOnUnpin.add(bitmap);
+            return;
+        }
+        if (pooled.contains(bitmap)) {
+            return;
+        }
+        if (bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getAllocationByteCount() > maxBytes) {
+            drops++;
+            return;
+        }
+
+        int size = bitmap.getAllocationByteCount();
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(size, bucket);
+        }
+        bucket.addLast(bitmap);
+        pooled.add(bitmap);
+        if (wasLent) {
+            overwritten.add(bitmap);
+        }
+        pooledBytes += size;
+        returns++;
+        trimTo(maxBytes);
+    }
+
+    /**
+     * Fija un bitmap obtenido de la caché para que no sea reutilizado mientras se dibuja.
+     * @param bitmap Bitmap a fijar
+     * @return false si el bitmap ya fue entregado para otra decodificación y su contenido no es válido
+     */
+    public synchronized boolean pin(Bitmap bitmap) {
+        if (bitmap.isRecycled() || lent.contains(bitmap) || overwritten.contains(bitmap)) {
+            return false;
+        }
+        if (pooled.remove(bitmap)) {
+            // Estaba libre en el pool con su contenido intacto: se recupera
+            removeFromBucket(bitmap);
+        }
+        pins.merge(bitmap, 1, Integer::sum);
+        return true;
+    }
+
+    /**
+     * Fija el resultado de una decodificación, haya usado o no un bitmap del pool.
+     * @param bitmap Bitmap recién decodificado
+     */
+    public synchronized void pinDecoded(Bitmap bitmap) {
+        lent.remove(bitmap);
+        pins.merge(bitmap, 1, Integer::sum);
+    }
+
+    /**
+     * Libera un uso de un bitmap fijado.
+     * @param bitmap Bitmap fijado con {@link #pin(Bitmap)} o {@link #pinDecoded(Bitmap)}
+     */
+    public synchronized void unpin(Bitmap bitmap) {
+        Integer count = pins.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pins.put(bitmap, count - 1);
+            return;
+        }
+        pins.remove(bitmap);
+        if (returnOnUnpin.remove(bitmap)) {
+            put(bitmap);
+        }
+    }
+
+    /**
+     * Libera los bitmaps libres del pool según el nivel de memoria informado por el sistema.
+     * @param level Nivel de {@link ComponentCallbacks2}
+     */
+    public synchronized void trimMemory(int level) {
+        trimTo(level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN ? 0 : maxBytes / 2);
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getReturns() {
+        return returns;
+    }
+
+    public synchronized long getDrops() {
+        return drops;
+    }
+
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    /**
+     * Reinicia los contadores; útil para medir una sola exportación.
+     */
+    public synchronized void resetStats() {
+        hits = 0;
+        misses = 0;
+        returns = 0;
+        drops = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BitmapPool hits=" + hits + " misses=" + misses + " returns=" + returns
+            + " drops=" + drops + " pooledBytes=" + pooledBytes;
+    }
+
+    private void trimTo(long targetBytes) {
+        while (pooledBytes > targetBytes && !buckets.isEmpty()) {
+            // Se descartan primero los bitmaps más grandes
+            Map.Entry<Integer, ArrayDeque<Bitmap>> entry = buckets.lastEntry();
+            Bitmap bitmap = entry.getValue().pollFirst();
+            if (entry.getValue().isEmpty()) {
+                buckets.remove(entry.getKey());
+            }
+            pooled.remove(bitmap);
+            overwritten.remove(bitmap);
+            pooledBytes -= bitmap.getAllocationByteCount();
+            bitmap.recycle();
+            drops++;
+        }
+        if (targetBytes == 0) {
+            Log.d(TAG, "Pool cleared");
+        }
+    }
+
+    private void removeFromBucket(Bitmap bitmap) {
+        int size = bitmap.getAllocationByteCount();
+        ArrayDeque<Bitmap> bucket = buckets.get(size);
+        if (bucket != null) {
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                buckets.remove(size);
+            }
+        }
+        pooledBytes -= size;
+    }
+}
@@ -0,0 +1,99 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.net.Uri;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
+
+/**
+ * Ordena todas las imágenes del proyecto por fecha de captura.
+ * La clave de cada imagen se calcula una sola vez antes de ordenar, así el ordenamiento es
+ * O(n log n) comparando enteros. Cada página conserva su número de espacios y sus espacios en
+ * blanco; solo cambia qué imagen ocupa cada posición.
+ */
+public final class CaptureDateSorter {
+
+    private CaptureDateSorter() {
+    }
+
+    /**
+     * Imagen con su clave de orden ya calculada.
+     */
+    private static class SortEntry {
+        final long captureTime;
+        final int position;
+        final PageItem item;
+
+        SortEntry(long captureTime, int position, PageItem item) {
+            this.captureTime = captureTime;
+            this.position = position;
+            this.item = item;
+        }
+    }
+
+    /**
+     * Reúne las URIs de todas las páginas para cargar sus metadatos antes de ordenar.
+     * @param pages Páginas del proyecto
+     * @return URIs sin repetir en el orden en que aparecen
+     */
+    public static Set<Uri> collectUris(List<ImagePage> pages) {
+        Set<Uri> uris = new LinkedHashSet<>();
+        for (ImagePage page : pages) {
+            for (PageItem item : page.getItems()) {
+                if (!item.isPlaceholder() && item.getUri() != null) {
+                    uris.add(item.getUri());
+                }
+            }
+        }
+        return uris;
+    }
+
+    /**
+     * Reordena las imágenes de todas las páginas de la más antigua a la más reciente.
+     * Las imágenes sin fecha van al final en su orden actual; a igual fecha se conserva el orden previo.
+     * @param pages Páginas a reordenar; se modifican en el lugar
+     * @param metadata Metadatos por URI; una URI ausente se trata como sin fecha
+     * @return Número de imágenes ordenadas
+     */
+    public static int sortByCaptureDate(List<ImagePage> pages, Map<Uri, ImageMetadata> metadata) {
+        List<SortEntry> entries = new ArrayList<>();
+        for (ImagePage page : pages) {
+            for (PageItem item : page.getItems()) {
+                if (item.isPlaceholder() || item.getUri() == null) {
+                    continue;
+                }
+                ImageMetadata imageMetadata = metadata.get(item.getUri());
+                long key = imageMetadata != null && imageMetadata.hasCaptureTime()
+                    ? imageMetadata.getCaptureTime() : Long.MAX_VALUE;
+                entries.add(new SortEntry(key, entries.size(), item));
+            }
+        }
+
+        SortEntry[] sorted = entries.toArray(new SortEntry[0]);
+        Arrays.sort(sorted, (a, b) -> a.captureTime != b.captureTime
+            ? Long.compare(a.captureTime, b.captureTime)
+            : Integer.compare(a.position, b.position));
+
+        int next = 0;
+        for (ImagePage page : pages) {
+            List<PageItem> slots = page.getMutableItems();
+            for (int i = 0; i < slots.size(); i++) {
+                PageItem current = slots.get(i);
+                if (current.isPlaceholder() || current.getUri() == null) {
+                    continue;
+                }
+                PageItem replacement = sorted[next++].item;
+                if (replacement != current) {
+                    slots.set(i, replacement);
+                }
+            }
+        }
+        return sorted.length;
+    }
+}
@@ -0,0 +1,508 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageSize;
+
+/**
+ * Planificador de memoria que se ejecuta antes de rasterizar.
+ * Lee el encabezado de cada imagen, calcula los bytes del bitmap que produciría su celda y los
+ * compara con el presupuesto disponible, que es el menor entre el de {@link ExportOptions} y la
+ * mitad del heap libre. Si una imagen no cabe se decodifica en RGB_565 (solo JPEG, que no tiene
+ * transparencia) y, si aún no cabe, a menor resolución. Como el escritor retiene las imágenes de una
+ * página hasta dibujarla, también se compara el total de cada página con el presupuesto y, si lo supera,
+ * se reducen en proporción todas sus imágenes. Cada ajuste queda en el {@link QualityReport}.
+ */
+public class DecodePlanner {
+
+    private static final String TAG = "DecodePlanner";
+    private static final int HEAP_HEADROOM_DIVISOR = 2;
+    // Margen para que el redondeo del decodificador no vuelva a superar el límite
+    private static final double SHRINK_MARGIN = 0.95;
+    // Reducciones sucesivas de una página antes de aceptar que sus imágenes ya no se achican más
+    private static final int MAX_PAGE_SHRINK_STEPS = 8;
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+
+    private final ContentResolver resolver;
+    private final ExportOptions options;
+    private final boolean jpegPassthrough;
+    private final PerformanceMetrics metrics;
+    private final QualityReport report;
+    private final Set<Uri> unreadableUris;
+    private final ImageMetadataService metadataService;
+
+    /**
+     * Decisión de decodificación de una imagen.
+     */
+    public static class ImagePlan {
+        private final Uri uri;
+        private final JpegHeader jpegHeader;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int orientation;
+        private final float boxWidth;
+        private final float boxHeight;
+        private final Bitmap.Config config;
+        private final long bytes;
+
+        ImagePlan(Uri uri, @Nullable JpegHeader jpegHeader, int sourceWidth, int sourceHeight, int orientation,
+                  float boxWidth, float boxHeight, Bitmap.Config config, long bytes) {
+            this.uri = uri;
+            this.jpegHeader = jpegHeader;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.orientation = orientation;
+            this.boxWidth = boxWidth;
+            this.boxHeight = boxHeight;
+            this.config = config;
+            this.bytes = bytes;
+        }
+
+        public Uri getUri() {
+            return uri;
+        }
+
+        /**
+         * @return Encabezado si la imagen se incrusta sin decodificar, o null
+         */
+        @Nullable
+        public JpegHeader getJpegHeader() {
+            return jpegHeader;
+        }
+
+        public boolean isJpegPassthrough() {
+            return jpegHeader != null;
+        }
+
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+
+        /**
+         * @return Orientación EXIF que se aplica al dibujar
+         */
+        public int getOrientation() {
+            return orientation;
+        }
+
+        /**
+         * @return Ancho del recuadro en el que se ajusta el bitmap decodificado, en la orientación guardada
+         */
+        public float getBoxWidth() {
+            return boxWidth;
+        }
+
+        public float getBoxHeight() {
+            return boxHeight;
+        }
+
+        public Bitmap.Config getConfig() {
+            return config;
+        }
+
+        /**
+         * @return Bytes estimados del bitmap; 0 si la imagen no se decodifica
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Plan de una página: su rejilla en cada formato y la decisión por espacio.
+     */
+    public static class PagePlan {
+        private final PageLayoutEngine.PageLayout[] layouts;
+        private final ImagePlan[] images;
+        private final long bytes;
+
+        PagePlan(PageLayoutEngine.PageLayout[] layouts, ImagePlan[] images, long bytes) {
+            this.layouts = layouts;
+            this.images = images;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return Rejilla por formato, en el orden de los tamaños de página
+         */
+        public PageLayoutEngine.PageLayout[] getLayouts() {
+            return layouts;
+        }
+
+        /**
+         * @param slotIndex Posición en la página
+         * @return Plan de la imagen, o null si es un espacio vacío o una imagen ilegible
+         */
+        @Nullable
+        public ImagePlan getImage(int slotIndex) {
+            return images[slotIndex];
+        }
+
+        public int getSlotCount() {
+            return images.length;
+        }
+
+        /**
+         * @return Bytes estimados de todos los bitmaps de la página
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Plan completo de la exportación.
+     */
+    public static class Plan {
+        private final List<PagePlan> pages;
+        private final long budgetBytes;
+
+        Plan(List<PagePlan> pages, long budgetBytes) {
+            this.pages = pages;
+            this.budgetBytes = budgetBytes;
+        }
+
+        public PagePlan getPage(int pageIndex) {
+            return pages.get(pageIndex);
+        }
+
+        public int getPageCount() {
+            return pages.size();
+        }
+
+        /**
+         * @return Presupuesto de bytes en vuelo con el que se hizo el plan
+         */
+        public long getBudgetBytes() {
+            return budgetBytes;
+        }
+    }
+
+    /**
+     * Dimensiones leídas del encabezado.
+     */
+    private static class Header {
+        final JpegHeader jpegHeader;
+        final int width;
+        final int height;
+        final boolean opaque;
+        final int orientation;
+
+        Header(@Nullable JpegHeader jpegHeader, int width, int height, boolean opaque, int orientation) {
+            this.jpegHeader = jpegHeader;
+            this.width = width;
+            this.height = height;
+            this.opaque = opaque;
+            this.orientation = orientation;
+        }
+    }
+
+    /**
+     * @param resolver ContentResolver para leer los encabezados
+     * @param options Presupuesto de memoria, número de hilos y perfil de calidad
+     * @param jpegPassthrough true si los JPEG se incrustan sin decodificar
+     * @param metrics Receptor del tiempo de planificación
+     * @param report Receptor de los ajustes de calidad e imágenes ilegibles
+     * @param unreadableUris URIs que {@link UriValidator} ya marcó como ilegibles; se omiten sin abrirlas
+     * @param metadataService Caché de metadatos ya leídos, consultada antes de abrir cada imagen
+     */
+    public DecodePlanner(ContentResolver resolver, ExportOptions options, boolean jpegPassthrough,
+                         PerformanceMetrics metrics, QualityReport report, Set<Uri> unreadableUris,
+                         ImageMetadataService metadataService) {
+        this.resolver = resolver;
+        this.options = options;
+        this.jpegPassthrough = jpegPassthrough;
+        this.metrics = metrics;
+        this.report = report;
+        this.unreadableUris = unreadableUris;
+        this.metadataService = metadataService;
+    }
+
+    /**
+     * Lee los encabezados en paralelo y decide cómo decodificar cada imagen.
+     * @param pages Páginas a exportar
+     * @param pageSizes Tamaños de página que se escriben a la vez
+     * @param cancellationSignal Señal revisada mientras se leen los encabezados (puede ser null)
+     * @return Plan por página
+     * @throws InterruptedException si el hilo se interrumpe mientras espera los encabezados
+     */
+    public Plan plan(List<ImagePage> pages, List<PageSize> pageSizes,
+                     @Nullable CancellationSignal cancellationSignal) throws InterruptedException {
+        long planStart = metrics.begin(PerformanceMetrics.Stage.PLAN);
+        ExecutorService readers = Executors.newFixedThreadPool(options.getWorkerCount(), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-plan");
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        try {
+            // Cada URI se lee una sola vez aunque aparezca en varias páginas
+            Map<Uri, Future<Header>> headers = new HashMap<>();
+            for (ImagePage page : pages) {
+                for (PageItem item : page.getItems()) {
+                    Uri uri = item.getUri();
+                    if (!item.isPlaceholder() && uri != null && !headers.containsKey(uri)
+                        && !unreadableUris.contains(uri)) {
+                        headers.put(uri, readers.submit(() -> readHeader(uri)));
+                    }
+                }
+            }
+
+            long budget = computeBudget();
+            ExportProfile profile = options.getProfile();
+            List<PagePlan> pagePlans = new ArrayList<>(pages.size());
+            long largestPage = 0;
+            for (int pageIndex = 0; pageIndex < pages.size(); pageIndex++) {
+                if (cancellationSignal != null) {
+                    cancellationSignal.throwIfCanceled();
+                }
+                ImagePage page = pages.get(pageIndex);
+                PageLayoutEngine.PageLayout[] layouts = new PageLayoutEngine.PageLayout[pageSizes.size()];
+                float cellWidth = 0;
+                float cellHeight = 0;
+                for (int target = 0; target < layouts.length; target++) {
+                    layouts[target] = PageLayoutEngine.getInstance()
+                        .layout(page, pageSizes.get(target), profile.getPixelsPerPoint());
+                    // La celda que contiene a todas las de los formatos fija el tamaño de decodificación
+                    cellWidth = Math.max(cellWidth, layouts[target].getCellWidth());
+                    cellHeight = Math.max(cellHeight, layouts[target].getCellHeight());
+                }
+
+                List<PageItem> items = page.getItems();
+                ImagePlan[] images = new ImagePlan[items.size()];
+                long pageBytes = 0;
+                for (int slot = 0; slot < items.size(); slot++) {
+                    PageItem item = items.get(slot);
+                    if (item.isPlaceholder() || item.getUri() == null) {
+                        continue;
+                    }
+                    Future<Header> pending = headers.get(item.getUri());
+                    if (pending == null) {
+                        report.add(pageIndex, slot, item.getUri(), QualityReport.Reason.OMITTED,
+                            "unreadable at import");
+                        continue;
+                    }
+                    Header header = await(pending);
+                    if (header == null) {
+                        report.add(pageIndex, slot, item.getUri(), QualityReport.Reason.OMITTED,
+                            "unreadable header");
+                        continue;
+                    }
+                    images[slot] = planImage(pageIndex, slot, item.getUri(), header, cellWidth, cellHeight, budget);
+                    pageBytes += images[slot].getBytes();
+                }
+                if (pageBytes > budget) {
+                    pageBytes = fitPage(pageIndex, images, pageBytes, budget);
+                }
+                largestPage = Math.max(largestPage, pageBytes);
+                pagePlans.add(new PagePlan(layouts, images, pageBytes));
+            }
+            Log.d(TAG, "Plan ready: budget=" + budget + " largestPageBytes=" + largestPage);
+            return new Plan(pagePlans, budget);
+        } finally {
+            readers.shutdownNow();
+            metrics.end(PerformanceMetrics.Stage.PLAN, planStart);
+        }
+    }
+
+    /**
+     * Estima los bytes del bitmap que {@link BitmapDecoder#decodeToSize} produce al ajustar la
+     * imagen en el recuadro; una imagen más pequeña que el recuadro conserva su tamaño natural.
+     */
+    static long estimateBytes(int sourceWidth, int sourceHeight, float boxWidth, float boxHeight,
+                              Bitmap.Config config) {
+        float scale = Math.min(1f, Math.min(boxWidth / sourceWidth, boxHeight / sourceHeight));
+        long width = Math.max(1, Math.round(sourceWidth * scale));
+        long height = Math.max(1, Math.round(sourceHeight * scale));
+        int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+        // Margen de una fila y columna, igual que la reserva del pool
+        return (width + 1) * (height + 1) * bytesPerPixel;
+    }
+
+    private ImagePlan planImage(int pageIndex, int slot, Uri uri, Header header,
+                                float boxWidth, float boxHeight, long budget) {
+        if (ExifOrientation.isTransposed(header.orientation)) {
+            // El bitmap se decodifica sin rotar; la celda se compara con sus lados intercambiados
+            float swap = boxWidth;
+            boxWidth = boxHeight;
+            boxHeight = swap;
+        }
+        if (header.jpegHeader != null) {
+            return new ImagePlan(uri, header.jpegHeader, header.width, header.height, header.orientation,
+                boxWidth, boxHeight, options.getProfile().getBitmapConfig(), 0);
+        }
+
+        Bitmap.Config config = options.getProfile().getBitmapConfig();
+        long bytes = estimateBytes(header.width, header.height, boxWidth, boxHeight, config);
+        if (bytes > budget && config == Bitmap.Config.ARGB_8888 && header.opaque) {
+            config = Bitmap.Config.RGB_565;
+            bytes = estimateBytes(header.width, header.height, boxWidth, boxHeight, config);
+            report.add(pageIndex, slot, uri, QualityReport.Reason.REDUCED_COLOR, "RGB_565");
+        }
+        if (bytes > budget) {
+            double shrink = Math.sqrt(budget / (double) bytes) * SHRINK_MARGIN;
+            float originalWidth = boxWidth;
+            float originalHeight = boxHeight;
+            boxWidth = Math.max(1f, (float) (boxWidth * shrink));
+            boxHeight = Math.max(1f, (float) (boxHeight * shrink));
+            bytes = estimateBytes(header.width, header.height, boxWidth, boxHeight, config);
+            report.add(pageIndex, slot, uri, QualityReport.Reason.REDUCED_RESOLUTION,
+                String.format(Locale.US, "%.0fx%.0f -> %.0fx%.0f", originalWidth, originalHeight,
+                    boxWidth, boxHeight));
+        }
+        return new ImagePlan(uri, null, header.width, header.height, header.orientation,
+            boxWidth, boxHeight, config, bytes);
+    }
+
+    /**
+     * Reduce en la misma proporción todas las imágenes decodificadas de una página hasta que su total
+     * cabe en el presupuesto. El recuadro más pequeño hace que {@link BitmapDecoder} elija un
+     * inSampleSize mayor para cada imagen.
+     * @return Bytes estimados de la página después de reducirla
+     */
+    private long fitPage(int pageIndex, ImagePlan[] images, long pageBytes, long budget) {
+        float[] originalWidths = new float[images.length];
+        float[] originalHeights = new float[images.length];
+        for (int slot = 0; slot < images.length; slot++) {
+            if (images[slot] != null) {
+                originalWidths[slot] = images[slot].getBoxWidth();
+                originalHeights[slot] = images[slot].getBoxHeight();
+            }
+        }
+
+        long original = pageBytes;
+        for (int step = 0; step < MAX_PAGE_SHRINK_STEPS && pageBytes > budget; step++) {
+            double shrink = Math.sqrt(budget / (double) pageBytes) * SHRINK_MARGIN;
+            long reduced = 0;
+            for (int slot = 0; slot < images.length; slot++) {
+                ImagePlan image = images[slot];
+                if (image == null || image.isJpegPassthrough()) {
+                    continue;
+                }
+                // Se parte del tamaño real del bitmap; reducir un recuadro mayor que la imagen no ahorra nada
+                float fit = Math.min(1f, Math.min(image.getBoxWidth() / image.getSourceWidth(),
+                    image.getBoxHeight() / image.getSourceHeight()));
+                float boxWidth = Math.max(1f, (float) (image.getSourceWidth() * fit * shrink));
+                float boxHeight = Math.max(1f, (float) (image.getSourceHeight() * fit * shrink));
+                long bytes = estimateBytes(image.getSourceWidth(), image.getSourceHeight(), boxWidth, boxHeight,
+                    image.getConfig());
+                images[slot] = new ImagePlan(image.getUri(), null, image.getSourceWidth(), image.getSourceHeight(),
+                    image.getOrientation(), boxWidth, boxHeight, image.getConfig(), bytes);
+                reduced += bytes;
+            }
+            if (reduced >= pageBytes) {
+                // Todas las imágenes ya están en su tamaño mínimo
+                break;
+            }
+            pageBytes = reduced;
+        }
+
+        for (int slot = 0; slot < images.length; slot++) {
+            ImagePlan image = images[slot];
+            if (image != null && !image.isJpegPassthrough()
+                && (image.getBoxWidth() != originalWidths[slot] || image.getBoxHeight() != originalHeights[slot])) {
+                report.add(pageIndex, slot, image.getUri(), QualityReport.Reason.REDUCED_RESOLUTION,
+                    String.format(Locale.US, "%.0fx%.0f -> %.0fx%.0f (page budget)", originalWidths[slot],
+                        originalHeights[slot], image.getBoxWidth(), image.getBoxHeight()));
+            }
+        }
+        Log.d(TAG, "Page " + pageIndex + " reduced from " + original + " to " + pageBytes + " bytes");
+        return pageBytes;
+    }
+
+    private long computeBudget() {
+        Runtime runtime = Runtime.getRuntime();
+        long headroom = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return Math.max(1, Math.min(options.getMaxInFlightBytes(), headroom / HEAP_HEADROOM_DIVISOR));
+    }
+
+    @Nullable
+    private Header readHeader(Uri uri) {
+        // La validación al importar ya dejó los metadatos en caché en la mayoría de los casos
+        ImageMetadata metadata = metadataService.peek(uri);
+        try {
+            if (!jpegPassthrough || !isMaybeJpeg(uri)) {
+                if (metadata == null) {
+                    metadata = ImageProbe.probe(resolver, uri);
+                }
+                return metadata != null ? decodedHeader(uri, metadata, null) : null;
+            }
+            // Un solo descriptor sirve para el marcador SOF y, si no estaban en caché, para los metadatos
+            try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r")) {
+                if (descriptor == null) {
+                    return null;
+                }
+                FileDescriptor fd = descriptor.getFileDescriptor();
+                // El flujo no se cierra: el descriptor pertenece a ParcelFileDescriptor
+                JpegHeader jpeg = JpegHeader.read(new FileInputStream(fd));
+                if (metadata == null) {
+                    metadata = probeFromStart(uri, fd);
+                }
+                return metadata != null ? decodedHeader(uri, metadata, jpeg) : null;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read header of " + uri, e);
+            return null;
+        }
+    }
+
+    private Header decodedHeader(Uri uri, ImageMetadata metadata, @Nullable JpegHeader jpeg) {
+        if (jpeg != null && jpeg.isEmbeddable()) {
+            return new Header(jpeg, jpeg.getWidth(), jpeg.getHeight(), true, metadata.getOrientation());
+        }
+        return new Header(null, metadata.getWidth(), metadata.getHeight(),
+            JPEG_MIME_TYPE.equals(resolver.getType(uri)), metadata.getOrientation());
+    }
+
+    private boolean isMaybeJpeg(Uri uri) {
+        String type = resolver.getType(uri);
+        return type == null || JPEG_MIME_TYPE.equalsIgnoreCase(type);
+    }
+
+    @Nullable
+    private ImageMetadata probeFromStart(Uri uri, FileDescriptor fd) throws IOException {
+        try {
+            Os.lseek(fd, 0, OsConstants.SEEK_SET);
+        } catch (ErrnoException e) {
+            // Descriptor no posicionable: el sondeo abre el suyo
+            return ImageProbe.probe(resolver, uri);
+        }
+        return ImageProbe.probe(resolver, uri, fd);
+    }
+
+    @Nullable
+    private static Header await(Future<Header> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+}
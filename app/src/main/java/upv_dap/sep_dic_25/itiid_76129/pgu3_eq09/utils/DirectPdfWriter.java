@@ -0,0 +1,338 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.net.Uri;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Escritor de PDF propio que coloca las imágenes como XObjects sin pasar por un Canvas.
+ * Los JPEG se copian byte a byte desde el ContentResolver con el filtro DCTDecode, de modo que
+ * conservan su compresión original; el resto de las imágenes se vuelven a codificar como JPEG,
+ * o con Flate si tienen transparencia.
+ * Cada objeto se escribe en la salida en cuanto está completo y la tabla xref se agrega al final,
+ * así que la memoria usada no crece con el número de páginas.
+ */
+public class DirectPdfWriter implements JpegPassthroughBackend {
+
+    private static final int CATALOG_ID = 1;
+    private static final int PAGES_ID = 2;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] HEADER = {
+        '%', 'P', 'D', 'F', '-', '1', '.', '4', '\n',
+        // Bytes mayores a 127 para que las herramientas traten el archivo como binario
+        '%', (byte) 0xE2, (byte) 0xE3, (byte) 0xCF, (byte) 0xD3, '\n'
+    };
+
+    private final CountingOutputStream out;
+    private final int jpegQuality;
+    private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+    // Reutilizado para la matriz de cada imagen
+    private final float[] orientationTransform = new float[6];
+    // Posición de cada objeto en el archivo; el índice es el número de objeto menos uno
+    private long[] offsets = new long[64];
+    private int objectCount;
+    private int[] pageIds = new int[16];
+    private int pageCount;
+    private boolean finished;
+
+    private int pageWidth;
+    private int pageHeight;
+    private float pointsPerPixel;
+    private StringBuilder content;
+    private StringBuilder xObjects;
+    private int imageIndex;
+
+    /**
+     * Interfaz para escribir el contenido de un stream directamente en la salida.
+     */
+    private interface StreamContent {
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * Escribe el encabezado de inmediato; el resto del documento se escribe página por página.
+     * @param outputStream Salida del documento; se recomienda con búfer y no se cierra al terminar
+     * @param jpegQuality Calidad (0-100) con la que se vuelven a codificar las imágenes que no son JPEG
+     * @throws IOException si no se pudo escribir el encabezado
+     */
+    public DirectPdfWriter(OutputStream outputStream, int jpegQuality) throws IOException {
+        this.out = new CountingOutputStream(outputStream);
+        this.jpegQuality = jpegQuality;
+        nextId();
+        nextId();
+        out.write(HEADER);
+        out.flush();
+    }
+
+    @Override
+    public void startPage(int width, int height, float pixelsPerPoint) {
+        if (content != null) {
+            throw new IllegalStateException("La página anterior no se ha terminado");
+        }
+        pageWidth = width;
+        pageHeight = height;
+        pointsPerPixel = 1f / pixelsPerPoint;
+        content = new StringBuilder();
+        xObjects = new StringBuilder();
+        imageIndex = 0;
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, RectF destination, int orientation) throws IOException {
+        int imageId;
+        if (bitmap.hasAlpha()) {
+            imageId = writeStreamObject(imageDictionary(bitmap.getWidth(), bitmap.getHeight(),
+                "/DeviceRGB", "/FlateDecode"), output -> writeFlateRgb(bitmap, output));
+        } else {
+            imageId = writeStreamObject(imageDictionary(bitmap.getWidth(), bitmap.getHeight(),
+                "/DeviceRGB", "/DCTDecode"), output -> {
+                    if (!bitmap.compress(Bitmap.CompressFormat.JPEG, jpegQuality, output)) {
+                        throw new IOException("No fue posible codificar la imagen");
+                    }
+                });
+        }
+        placeImage(imageId, destination, orientation);
+    }
+
+    @Override
+    public void drawJpeg(ContentResolver resolver, Uri uri, JpegHeader header, RectF destination, int orientation)
+            throws IOException {
+        String colorSpace = header.getComponents() == 1 ? "/DeviceGray" : "/DeviceRGB";
+        int imageId = writeStreamObject(imageDictionary(header.getWidth(), header.getHeight(),
+            colorSpace, "/DCTDecode"), output -> {
+                try (InputStream inputStream = resolver.openInputStream(uri)) {
+                    if (inputStream == null) {
+                        throw new IOException("No fue posible abrir " + uri);
+                    }
+                    int read;
+                    while ((read = inputStream.read(copyBuffer)) != -1) {
+                        output.write(copyBuffer, 0, read);
+                    }
+                }
+            });
+        placeImage(imageId, destination, orientation);
+    }
+
+    @Override
+    public void finishPage() throws IOException {
+        if (content == null) {
+            throw new IllegalStateException("No hay una página iniciada");
+        }
+        byte[] contentBytes = content.toString().getBytes(StandardCharsets.US_ASCII);
+        int contentId = writeStreamObject("", output -> output.write(contentBytes));
+
+        int pageId = beginObject();
+        write("<< /Type /Page /Parent " + PAGES_ID + " 0 R /MediaBox [0 0 " + pageWidth + ' ' + pageHeight
+            + "] /Resources << /XObject << " + xObjects + ">> >> /Contents " + contentId + " 0 R >>\n");
+        endObject();
+        if (pageCount == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+        }
+        pageIds[pageCount++] = pageId;
+
+        content = null;
+        xObjects = null;
+        // La página ya no se modifica: se envía al disco para no acumularla en búferes
+        out.flush();
+    }
+
+    /**
+     * Escribe el árbol de páginas, la tabla xref y el trailer.
+     * @throws IOException si falla la escritura
+     */
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        writeTrailer();
+        out.flush();
+        finished = true;
+    }
+
+    @Override
+    public void close() {
+        // La salida pertenece al llamador
+    }
+
+    /**
+     * @return Bytes escritos hasta el momento
+     */
+    public long getBytesWritten() {
+        return out.count;
+    }
+
+    private void writeTrailer() throws IOException {
+        if (content != null) {
+            throw new IllegalStateException("La última página no se ha terminado");
+        }
+
+        StringBuilder kids = new StringBuilder();
+        for (int i = 0; i < pageCount; i++) {
+            kids.append(pageIds[i]).append(" 0 R ");
+        }
+        beginObject(PAGES_ID);
+        write("<< /Type /Pages /Kids [" + kids + "] /Count " + pageCount + " >>\n");
+        endObject();
+        beginObject(CATALOG_ID);
+        write("<< /Type /Catalog /Pages " + PAGES_ID + " 0 R >>\n");
+        endObject();
+
+        long xrefOffset = out.count;
+        write("xref\n0 " + (objectCount + 1) + "\n0000000000 65535 f \n");
+        byte[] entry = "0000000000 00000 n \n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < objectCount; i++) {
+            // Cada entrada mide exactamente 20 bytes: desplazamiento de 10 dígitos, generación y tipo
+            long offset = offsets[i];
+            for (int digit = 9; digit >= 0; digit--) {
+                entry[digit] = (byte) ('0' + offset % 10);
+                offset /= 10;
+            }
+            out.write(entry);
+        }
+        write("trailer\n<< /Size " + (objectCount + 1) + " /Root " + CATALOG_ID + " 0 R >>\n"
+            + "startxref\n" + xrefOffset + "\n%%EOF\n");
+    }
+
+    private void placeImage(int imageId, RectF destination, int orientation) {
+        String name = "/Im" + (++imageIndex);
+        xObjects.append(name).append(' ').append(imageId).append(" 0 R ");
+        // El destino llega en píxeles con origen arriba a la izquierda; el PDF usa puntos desde abajo.
+        // La imagen ocupa el cuadrado unitario con su primera fila arriba (v = 1 - q), y la orientación
+        // EXIF se suma a la misma matriz cm, así los bytes originales se incrustan sin rotarlos
+        ExifOrientation.unitTransform(orientation, orientationTransform);
+        float su = orientationTransform[0];
+        float sv = orientationTransform[1];
+        float s0 = orientationTransform[2];
+        float tu = orientationTransform[3];
+        float tv = orientationTransform[4];
+        float t0 = orientationTransform[5];
+        float width = destination.width() * pointsPerPixel;
+        float height = destination.height() * pointsPerPixel;
+        float left = destination.left * pointsPerPixel;
+        float top = destination.top * pointsPerPixel;
+        content.append("q ")
+            .append(formatNumber(width * su)).append(' ')
+            .append(formatNumber(-height * tu)).append(' ')
+            .append(formatNumber(-width * sv)).append(' ')
+            .append(formatNumber(height * tv)).append(' ')
+            .append(formatNumber(left + width * (sv + s0))).append(' ')
+            .append(formatNumber(pageHeight - top - height * (tv + t0)))
+            .append(" cm ").append(name).append(" Do Q\n");
+    }
+
+    private static String imageDictionary(int width, int height, String colorSpace, String filter) {
+        return "/Type /XObject /Subtype /Image /Width " + width + " /Height " + height
+            + " /ColorSpace " + colorSpace + " /BitsPerComponent 8 /Filter " + filter;
+    }
+
+    /**
+     * Escribe un objeto stream cuya longitud se desconoce de antemano; la longitud se guarda
+     * en un objeto indirecto escrito justo después.
+     */
+    private int writeStreamObject(String dictionary, StreamContent streamContent) throws IOException {
+        int streamId = beginObject();
+        int lengthId = nextId();
+        write("<< " + dictionary + (dictionary.isEmpty() ? "" : " ") + "/Length " + lengthId + " 0 R >>\nstream\n");
+        long start = out.count;
+        streamContent.writeTo(out);
+        long length = out.count - start;
+        write("\nendstream\n");
+        endObject();
+
+        beginObject(lengthId);
+        write(length + "\n");
+        endObject();
+        return streamId;
+    }
+
+    private void writeFlateRgb(Bitmap bitmap, OutputStream output) throws IOException {
+        int width = bitmap.getWidth();
+        int[] row = new int[width];
+        byte[] rgb = new byte[width * 3];
+        Deflater deflater = new Deflater();
+        try {
+            DeflaterOutputStream deflate = new DeflaterOutputStream(output, deflater, COPY_BUFFER_SIZE);
+            for (int y = 0; y < bitmap.getHeight(); y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                for (int x = 0; x < width; x++) {
+                    // Se compone sobre blanco, que es el fondo de la página
+                    int pixel = row[x];
+                    int alpha = pixel >>> 24;
+                    int background = 255 * (255 - alpha);
+                    rgb[x * 3] = (byte) ((((pixel >> 16) & 0xFF) * alpha + background) / 255);
+                    rgb[x * 3 + 1] = (byte) ((((pixel >> 8) & 0xFF) * alpha + background) / 255);
+                    rgb[x * 3 + 2] = (byte) (((pixel & 0xFF) * alpha + background) / 255);
+                }
+                deflate.write(rgb);
+            }
+            deflate.finish();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private int nextId() {
+        if (objectCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, objectCount * 2);
+        }
+        offsets[objectCount++] = -1;
+        return objectCount;
+    }
+
+    private int beginObject() throws IOException {
+        int id = nextId();
+        beginObject(id);
+        return id;
+    }
+
+    private void beginObject(int id) throws IOException {
+        offsets[id - 1] = out.count;
+        write(id + " 0 obj\n");
+    }
+
+    private void endObject() throws IOException {
+        write("endobj\n");
+    }
+
+    private void write(String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String formatNumber(float value) {
+        return BigDecimal.valueOf(Math.round(value * 100.0), 2).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Cuenta los bytes escritos para registrar la posición de cada objeto en la tabla xref.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.graphics.Matrix;
+import android.graphics.RectF;
+
+/**
+ * Transformaciones de la orientación EXIF (valores 1 a 8).
+ * Los bitmaps y los JPEG incrustados conservan la orientación en que fueron guardados; la orientación
+ * se aplica al dibujar, dentro de la misma transformación que coloca la imagen en su celda, de modo que
+ * enderezar una foto no crea ningún bitmap adicional.
+ */
+public final class ExifOrientation {
+
+    public static final int NORMAL = 1;
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * @return true si la orientación intercambia ancho y alto (rotaciones de 90 y 270 grados)
+     */
+    public static boolean isTransposed(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * Transformación del cuadrado unitario de la imagen guardada (u hacia la derecha, v hacia abajo)
+     * al cuadrado unitario de la imagen como se ve: s = su*u + sv*v + s0 y t = tu*u + tv*v + t0.
+     * @param orientation Orientación EXIF; un valor desconocido se trata como normal
+     * @param out Arreglo de al menos 6 posiciones donde se escribe {su, sv, s0, tu, tv, t0}
+     */
+    public static void unitTransform(int orientation, float[] out) {
+        switch (orientation) {
+            case 2: // Espejo horizontal
+                set(out, -1, 0, 1, 0, 1, 0);
+                break;
+            case 3: // 180 grados
+                set(out, -1, 0, 1, 0, -1, 1);
+                break;
+            case 4: // Espejo vertical
+                set(out, 1, 0, 0, 0, -1, 1);
+                break;
+            case 5: // Transpuesta
+                set(out, 0, 1, 0, 1, 0, 0);
+                break;
+            case 6: // 90 grados en sentido horario
+                set(out, 0, -1, 1, 1, 0, 0);
+                break;
+            case 7: // Transversa
+                set(out, 0, -1, 1, -1, 0, 1);
+                break;
+            case 8: // 270 grados en sentido horario
+                set(out, 0, 1, 0, -1, 0, 1);
+                break;
+            default:
+                set(out, 1, 0, 0, 0, 1, 0);
+                break;
+        }
+    }
+
+    /**
+     * Prepara la matriz que lleva una región del bitmap guardado a su destino ya orientado.
+     * Se usa con {@link android.graphics.Canvas#drawBitmap(android.graphics.Bitmap, Matrix, android.graphics.Paint)},
+     * que a diferencia de dibujar en (0, 0) no aplica la densidad del bitmap, así que el resultado ocupa
+     * exactamente el destino aunque el decodificador haya escalado con inDensity e inTargetDensity.
+     * @param matrix Matriz a sobrescribir
+     * @param orientation Orientación EXIF
+     * @param sourceLeft Borde izquierdo de la región del bitmap
+     * @param sourceTop Borde superior de la región del bitmap
+     * @param sourceWidth Ancho de la región del bitmap
+     * @param sourceHeight Alto de la región del bitmap
+     * @param destination Rectángulo donde debe verse la región ya orientada
+     * @param scratch Arreglo reutilizable de al menos 9 posiciones
+     */
+    public static void setCanvasMatrix(Matrix matrix, int orientation, float sourceLeft, float sourceTop,
+                                       float sourceWidth, float sourceHeight, RectF destination, float[] scratch) {
+        canvasValues(orientation, sourceLeft, sourceTop, sourceWidth, sourceHeight, destination, scratch);
+        matrix.setValues(scratch);
+    }
+
+    /**
+     * Valores de la matriz de {@link #setCanvasMatrix}, en el orden de {@link Matrix#setValues(float[])}.
+     * @param out Arreglo de al menos 9 posiciones donde se escriben los valores
+     */
+    static void canvasValues(int orientation, float sourceLeft, float sourceTop, float sourceWidth,
+                             float sourceHeight, RectF destination, float[] out) {
+        unitTransform(orientation, out);
+        float su = out[0];
+        float sv = out[1];
+        float s0 = out[2];
+        float tu = out[3];
+        float tv = out[4];
+        float t0 = out[5];
+        float width = destination.width();
+        float height = destination.height();
+
+        // Orden de Matrix#setValues: escala X, sesgo X, traslación X, sesgo Y, escala Y, traslación Y, perspectiva
+        out[0] = width * su / sourceWidth;
+        out[1] = width * sv / sourceHeight;
+        out[2] = destination.left + width * (s0 - su * sourceLeft / sourceWidth - sv * sourceTop / sourceHeight);
+        out[3] = height * tu / sourceWidth;
+        out[4] = height * tv / sourceHeight;
+        out[5] = destination.top + height * (t0 - tu * sourceLeft / sourceWidth - tv * sourceTop / sourceHeight);
+        out[6] = 0f;
+        out[7] = 0f;
+        out[8] = 1f;
+    }
+
+    private static void set(float[] out, float su, float sv, float s0, float tu, float tv, float t0) {
+        out[0] = su;
+        out[1] = sv;
+        out[2] = s0;
+        out[3] = tu;
+        out[4] = tv;
+        out[5] = t0;
+    }
+}
@@ -0,0 +1,100 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+/**
+ * Parámetros de ajuste de la exportación a PDF.
+ * Los valores por defecto se calculan a partir del dispositivo.
+ */
+public class ExportOptions {
+
+    private static final int HEAP_FRACTION = 4;
+
+    /**
+     * Implementación usada para escribir el documento.
+     */
+    public enum Backend {
+        /** {@link android.graphics.pdf.PdfDocument}: todas las imágenes se rasterizan en un Canvas */
+        PDF_DOCUMENT,
+        /** {@link DirectPdfWriter}: los JPEG se incrustan sin decodificar */
+        DIRECT
+    }
+
+    /**
+     * Lugar donde se guarda el documento.
+     */
+    public enum Destination {
+        /** {@link MediaStoreOutput}: carpeta Documents compartida, sin permisos de almacenamiento */
+        MEDIA_STORE,
+        /** {@link FileChannelOutput}: carpeta de documentos propia de la app */
+        APP_FILES
+    }
+
+    private int workerCount;
+    private long maxInFlightBytes;
+    private Backend backend = Backend.DIRECT;
+    private ExportProfile profile = ExportProfile.SCREEN;
+    private Destination destination = Destination.MEDIA_STORE;
+
+    /**
+     * Crea opciones con un hilo de decodificación por núcleo (máximo 4) y
+     * un presupuesto de bitmaps en vuelo de una cuarta parte del heap.
+     */
+    public ExportOptions() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.workerCount = Math.max(1, Math.min(4, cores - 1));
+        this.maxInFlightBytes = Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+    }
+
+    /**
+     * Copia las opciones para que una exportación en curso no vea cambios posteriores.
+     * @param other Opciones a copiar
+     */
+    public ExportOptions(ExportOptions other) {
+        this.workerCount = other.workerCount;
+        this.maxInFlightBytes = other.maxInFlightBytes;
+        this.backend = other.backend;
+        this.profile = other.profile;
+        this.destination = other.destination;
+    }
+
+    // Getters y setters de las opciones
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = Math.max(1, workerCount);
+    }
+
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        this.maxInFlightBytes = Math.max(1, maxInFlightBytes);
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    public void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public ExportProfile getProfile() {
+        return profile;
+    }
+
+    public void setProfile(ExportProfile profile) {
+        this.profile = profile;
+    }
+
+    public Destination getDestination() {
+        return destination;
+    }
+
+    public void setDestination(Destination destination) {
+        this.destination = destination;
+    }
+}
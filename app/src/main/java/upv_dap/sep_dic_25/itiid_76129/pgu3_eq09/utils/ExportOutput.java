@@ -0,0 +1,173 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * Destino de un documento exportado.
+ * Se escribe con búfer sobre un {@link FileChannel} y el documento solo aparece con su nombre final
+ * al llamar {@link #commit()}; si se cierra sin confirmar, lo escrito se descarta. Así una exportación
+ * cancelada o fallida nunca deja un archivo a medias ni reemplaza uno anterior.
+ */
+public abstract class ExportOutput implements Closeable {
+
+    private static final String TAG = "ExportOutput";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FileChannel channel;
+    private OutputStream outputStream;
+    private boolean prepared;
+    private boolean committed;
+    private boolean closed;
+    private boolean discarded;
+    private long bytesWritten;
+
+    /**
+     * Crea el destino indicado en las opciones. Si MediaStore no acepta el documento
+     * se usa la carpeta de documentos propia de la app.
+     * @param context Contexto de la aplicación
+     * @param fileName Nombre deseado; se agrega un sufijo si ya existe
+     * @param destination Destino preferido
+     * @return Salida abierta y lista para escribir
+     * @throws IOException si no se pudo abrir ningún destino
+     */
+    public static ExportOutput create(Context context, String fileName, ExportOptions.Destination destination)
+            throws IOException {
+        if (destination == ExportOptions.Destination.MEDIA_STORE) {
+            try {
+                return new MediaStoreOutput(context, fileName);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "MediaStore rejected the export, using app storage", e);
+            }
+        }
+        return new FileChannelOutput(context, fileName);
+    }
+
+    /**
+     * Las subclases abren el canal sobre un archivo temporal o pendiente.
+     * @param channel Canal de escritura; se cierra junto con la salida
+     */
+    protected void open(FileChannel channel) {
+        this.channel = channel;
+        this.outputStream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+    }
+
+    /**
+     * @return Flujo con búfer hacia el documento; no debe cerrarse directamente
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    /**
+     * Envía el búfer al sistema operativo sin esperar a que llegue al disco.
+     * @throws IOException si falla la escritura
+     */
+    public void flush() throws IOException {
+        outputStream.flush();
+    }
+
+    /**
+     * Envía el búfer y espera a que los datos queden en el almacenamiento físico.
+     * @throws IOException si falla la escritura
+     */
+    public void sync() throws IOException {
+        outputStream.flush();
+        channel.force(true);
+    }
+
+    /**
+     * Sincroniza y cierra el documento sin publicarlo, para que varias salidas terminen de escribirse
+     * antes de que cualquiera aparezca con su nombre final.
+     * @throws IOException si no fue posible completar el documento
+     */
+    public void prepare() throws IOException {
+        if (prepared) {
+            return;
+        }
+        sync();
+        bytesWritten = channel.size();
+        closed = true;
+        outputStream.close();
+        prepared = true;
+    }
+
+    /**
+     * Sincroniza, cierra y publica el documento con su nombre final.
+     * @throws IOException si no fue posible completar el documento
+     */
+    public void commit() throws IOException {
+        prepare();
+        publish();
+        committed = true;
+    }
+
+    /**
+     * Retira un documento ya publicado; sirve para deshacer una exportación de varios formatos
+     * cuando otra de sus salidas no se pudo publicar. No hace nada si no fue confirmado.
+     */
+    public void revoke() {
+        if (!committed) {
+            return;
+        }
+        committed = false;
+        discarded = true;
+        discard();
+    }
+
+    /**
+     * Descarta el documento si no fue confirmado; no hace nada después de {@link #commit()}.
+     */
+    @Override
+    public void close() {
+        if (committed || discarded) {
+            return;
+        }
+        discarded = true;
+        if (!closed) {
+            closed = true;
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Could not close discarded export", e);
+            }
+        }
+        discard();
+    }
+
+    /**
+     * @return Tamaño del documento; válido después de {@link #commit()}
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return URI del documento; válida después de {@link #commit()}
+     */
+    public abstract Uri getUri();
+
+    /**
+     * @return Ubicación legible para mostrar al usuario
+     */
+    public abstract String getLocation();
+
+    /**
+     * Hace visible el documento con su nombre final; el canal ya está sincronizado y cerrado.
+     * @throws IOException si no se pudo publicar
+     */
+    protected abstract void publish() throws IOException;
+
+    /**
+     * Elimina lo escrito, o el documento ya publicado si se invoca desde {@link #revoke()};
+     * el canal ya está cerrado.
+     */
+    protected abstract void discard();
+}
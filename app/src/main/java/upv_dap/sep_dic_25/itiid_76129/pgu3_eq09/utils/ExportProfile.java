@@ -0,0 +1,52 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.graphics.Bitmap;
+
+/**
+ * Perfiles de calidad de la exportación. Cada perfil fija la densidad de píxeles de la página,
+ * y con ella el tamaño al que se decodifican las imágenes, el formato de los bitmaps y
+ * la calidad con la que se vuelven a comprimir.
+ */
+public enum ExportProfile {
+    /** 72 ppp, RGB_565 y compresión alta: para compartir rápido */
+    DRAFT(1f, Bitmap.Config.RGB_565, 60, "borrador"),
+    /** 144 ppp: la densidad que usaba la exportación antes de los perfiles */
+    SCREEN(2f, Bitmap.Config.ARGB_8888, 80, "pantalla"),
+    /** 300 ppp para imprimir */
+    PRINT(300f / 72f, Bitmap.Config.ARGB_8888, 92, "impresion");
+
+    private final float pixelsPerPoint;
+    private final Bitmap.Config bitmapConfig;
+    private final int jpegQuality;
+    private final String suffix;
+
+    ExportProfile(float pixelsPerPoint, Bitmap.Config bitmapConfig, int jpegQuality, String suffix) {
+        this.pixelsPerPoint = pixelsPerPoint;
+        this.bitmapConfig = bitmapConfig;
+        this.jpegQuality = jpegQuality;
+        this.suffix = suffix;
+    }
+
+    /**
+     * @return Píxeles rasterizados por cada punto PDF (1/72 de pulgada)
+     */
+    public float getPixelsPerPoint() {
+        return pixelsPerPoint;
+    }
+
+    public Bitmap.Config getBitmapConfig() {
+        return bitmapConfig;
+    }
+
+    public int getBytesPerPixel() {
+        return bitmapConfig == Bitmap.Config.RGB_565 ? 2 : 4;
+    }
+
+    public int getJpegQuality() {
+        return jpegQuality;
+    }
+
+    public String getSuffix() {
+        return suffix;
+    }
+}
@@ -0,0 +1,27 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import androidx.annotation.StringRes;
+
+/**
+ * Exportación rechazada antes de empezar porque falta algo que el usuario puede corregir.
+ * Lleva el recurso de texto que se le muestra; el mensaje de la excepción solo se usa en el registro.
+ */
+public class ExportValidationException extends IllegalStateException {
+
+    @StringRes
+    private final int messageRes;
+
+    /**
+     * @param messageRes Recurso con el mensaje para el usuario
+     * @param detail Descripción para el registro
+     */
+    public ExportValidationException(@StringRes int messageRes, String detail) {
+        super(detail);
+        this.messageRes = messageRes;
+    }
+
+    @StringRes
+    public int getMessageRes() {
+        return messageRes;
+    }
+}
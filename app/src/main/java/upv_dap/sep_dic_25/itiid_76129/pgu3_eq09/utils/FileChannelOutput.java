@@ -0,0 +1,95 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Environment;
+import android.util.Log;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Escribe el documento en la carpeta de documentos propia de la app.
+ * Se escribe en un temporal con nombre único y al confirmar se mueve de forma atómica a un nombre
+ * reservado previamente, así dos exportaciones nunca escriben ni reemplazan el mismo archivo.
+ */
+public class FileChannelOutput extends ExportOutput {
+
+    private static final String TAG = "FileChannelOutput";
+    private static final String TEMP_EXTENSION = ".part";
+    private static final int MAX_NAME_ATTEMPTS = 1000;
+
+    private final File directory;
+    private final String fileName;
+    private final File temp;
+    private File target;
+
+    /**
+     * Crea el temporal en la carpeta de documentos de la app.
+     * @param context Contexto de la aplicación
+     * @param fileName Nombre deseado del documento
+     * @throws IOException si no se pudo crear el temporal
+     */
+    public FileChannelOutput(Context context, String fileName) throws IOException {
+        File documents = context.getExternalFilesDir(Environment.DIRECTORY_DOCUMENTS);
+        this.directory = documents != null ? documents : new File(context.getFilesDir(), "documents");
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("No fue posible crear " + directory);
+        }
+        this.fileName = fileName;
+        this.temp = File.createTempFile("export_", TEMP_EXTENSION, directory);
+        open(FileChannel.open(temp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    @Override
+    public Uri getUri() {
+        return Uri.fromFile(target != null ? target : temp);
+    }
+
+    @Override
+    public String getLocation() {
+        return (target != null ? target : temp).getAbsolutePath();
+    }
+
+    @Override
+    protected void publish() throws IOException {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        String extension = dot > 0 ? fileName.substring(dot) : "";
+        for (int attempt = 0; attempt < MAX_NAME_ATTEMPTS; attempt++) {
+            File candidate = new File(directory, attempt == 0 ? fileName : base + "_" + attempt + extension);
+            try {
+                // La creación exclusiva reserva el nombre aunque otra exportación termine al mismo tiempo
+                Files.createFile(candidate.toPath());
+            } catch (FileAlreadyExistsException e) {
+                continue;
+            }
+            try {
+                Files.move(temp.toPath(), candidate.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                // Sin esto el nombre reservado quedaría como un archivo vacío en Documentos
+                if (!candidate.delete()) {
+                    Log.w(TAG, "Could not delete reserved name: " + candidate.getAbsolutePath());
+                }
+                throw e;
+            }
+            target = candidate;
+            return;
+        }
+        throw new IOException("No hay un nombre disponible para " + fileName);
+    }
+
+    @Override
+    protected void discard() {
+        // Después de publicar, el temporal ya se movió al nombre final
+        File file = target != null ? target : temp;
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete export: " + file.getAbsolutePath());
+        }
+    }
+}
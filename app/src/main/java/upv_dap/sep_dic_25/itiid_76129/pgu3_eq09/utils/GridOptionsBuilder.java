@@ -0,0 +1,73 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Calcula las rejillas (filas x columnas) que se ofrecen al usuario para acomodar una página.
+ * No depende de Android para poder medirse y probarse en la JVM.
+ */
+public class GridOptionsBuilder {
+
+    private static final int MAX_DIMENSION = 6;
+
+    private GridOptionsBuilder() {
+    }
+
+    /**
+     * Opción de rejilla mostrada en el diálogo de selección.
+     */
+    public static class GridOption {
+        public final int rows;
+        public final int columns;
+        public final String label;
+
+        GridOption(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            this.label = String.format(Locale.getDefault(), "%dx%d", rows, columns);
+        }
+    }
+
+    /**
+     * Genera las rejillas candidatas para una cantidad de espacios, ordenadas por área.
+     * @param slotCount Número de espacios de la página (mínimo 1)
+     * @return Lista de opciones sin duplicados
+     */
+    public static List<GridOption> build(int slotCount) {
+        List<GridOption> options = new ArrayList<>();
+        addOption(options, 1, slotCount);
+        if (slotCount > 1) {
+            addOption(options, slotCount, 1);
+        }
+
+        int maxDimension = Math.min(slotCount, MAX_DIMENSION);
+        for (int rows = 2; rows <= maxDimension; rows++) {
+            int columns = (int) Math.ceil(slotCount / (double) rows);
+            addOption(options, rows, columns);
+            addOption(options, columns, rows);
+        }
+
+        options.sort((a, b) -> {
+            int areaCompare = Integer.compare(a.rows * a.columns, b.rows * b.columns);
+            if (areaCompare != 0) {
+                return areaCompare;
+            }
+            return Integer.compare(a.rows, b.rows);
+        });
+
+        return options;
+    }
+
+    private static void addOption(List<GridOption> options, int rows, int columns) {
+        rows = Math.max(1, rows);
+        columns = Math.max(1, columns);
+        for (GridOption option : options) {
+            if (option.rows == rows && option.columns == columns) {
+                return;
+            }
+        }
+        options.add(new GridOption(rows, columns));
+    }
+}
@@ -1,7 +1,6 @@
 package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
 
 import android.content.Context;
-import android.media.ExifInterface;
 import android.net.Uri;
 import android.util.Log;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
@@ -10,48 +9,31 @@ import java.io.InputStream;
 
 /**
  * Clase utilitaria para extraer metadatos de imágenes
- * Proporciona funciones para obtener información EXIF de archivos de imagen
+ * Proporciona funciones para obtener información EXIF y dimensiones de archivos de imagen
  */
 public class ImageMetadataExtractor {
     
     private static final String TAG = "ImageMetadataExtractor";
     
     /**
-     * Extrae los metadatos EXIF de una imagen mediante su URI
+     * Extrae los metadatos de una imagen mediante su URI con {@link ImageProbe}
      * @param context Contexto de la aplicación para acceder al ContentResolver
      * @param uri URI de la imagen de la cual extraer metadatos
-     * @return Objeto ImageMetadata con la información extraída
+     * @return Objeto ImageMetadata con la información extraída, o null si la URI no es una imagen legible
+     *         o no se pudo leer
      */
     public static ImageMetadata extractMetadata(Context context, Uri uri) {
         ImageMetadata metadata = null;
         
         try {
-            // Usar ContentResolver para obtener InputStream de la imagen
-            InputStream inputStream = context.getContentResolver().openInputStream(uri);
-            
-            if (inputStream != null) {
-                // Crear ExifInterface desde el InputStream
-                ExifInterface exif = new ExifInterface(inputStream);
-                
-                // Extraer metadatos específicos de la imagen
-                String imageTime = exif.getAttribute(ExifInterface.TAG_DATETIME);
-                String imageWidth = exif.getAttribute(ExifInterface.TAG_IMAGE_WIDTH);
-                String imageHeight = exif.getAttribute(ExifInterface.TAG_IMAGE_LENGTH);
-                
-                // Crear objeto ImageMetadata con los datos extraídos
-                metadata = new ImageMetadata(imageTime, imageWidth, imageHeight);
-                
+            // El sondeo lee solo los encabezados y siempre entrega dimensiones reales
+            metadata = ImageProbe.probe(context.getContentResolver(), uri);
+            if (metadata != null) {
                 Log.d(TAG, "Metadata extracted successfully for URI: " + uri.toString());
-                
-                // Cerrar el InputStream
-                inputStream.close();
             }
-        } catch (IOException e) {
+        } catch (IOException | SecurityException e) {
+            // Un fallo de lectura o un permiso revocado puede ser temporal; null evita que quede en caché
             Log.e(TAG, "Error extracting metadata from image", e);
-            e.printStackTrace();
-            
-            // Retornar metadatos con valores por defecto en caso de error
-            metadata = new ImageMetadata("Unknown", "Unknown", "Unknown");
         }
         
         return metadata;
@@ -0,0 +1,177 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+
+/**
+ * Servicio de metadatos con caché concurrente por URI.
+ * Extrae los metadatos EXIF en segundo plano con {@link ImageMetadataExtractor} una sola vez por imagen.
+ */
+public class ImageMetadataService {
+
+    private static final String TAG = "ImageMetadataService";
+    private static final int THREAD_COUNT = 2;
+
+    private static ImageMetadataService instance;
+
+    private final Context context;
+    private final ConcurrentHashMap<Uri, CompletableFuture<ImageMetadata>> cache = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "metadata-loader");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receptor del resultado de una consulta; se invoca en el hilo principal.
+     */
+    public interface Callback {
+        void onMetadataLoaded(Uri uri, @Nullable ImageMetadata metadata);
+    }
+
+    /**
+     * Receptor del resultado de una consulta por lote; se invoca en el hilo principal.
+     */
+    public interface BatchCallback {
+        /**
+         * @param metadata Metadatos por URI; las imágenes que no se pudieron leer no aparecen
+         */
+        void onMetadataLoaded(Map<Uri, ImageMetadata> metadata);
+    }
+
+    private ImageMetadataService(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Obtiene la instancia única del servicio
+     * @param context Contexto de la aplicación
+     * @return Servicio compartido
+     */
+    public static synchronized ImageMetadataService getInstance(Context context) {
+        if (instance == null) {
+            instance = new ImageMetadataService(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Devuelve los metadatos si ya fueron extraídos, sin bloquear.
+     * @param uri URI de la imagen
+     * @return Metadatos en caché o null si aún no están disponibles
+     */
+    @Nullable
+    public ImageMetadata peek(Uri uri) {
+        CompletableFuture<ImageMetadata> future = cache.get(uri);
+        return future != null && future.isDone() ? future.getNow(null) : null;
+    }
+
+    /**
+     * Consulta los metadatos de una imagen. Un acierto de caché se entrega de inmediato;
+     * en otro caso se extraen en segundo plano y se entregan en el hilo principal.
+     * @param uri URI de la imagen
+     * @param callback Receptor del resultado
+     */
+    public void lookup(Uri uri, Callback callback) {
+        CompletableFuture<ImageMetadata> future = load(uri);
+        if (future.isDone() && Looper.myLooper() == Looper.getMainLooper()) {
+            callback.onMetadataLoaded(uri, future.getNow(null));
+            return;
+        }
+        future.whenComplete((metadata, error) ->
+            mainHandler.post(() -> callback.onMetadataLoaded(uri, metadata)));
+    }
+
+    /**
+     * Encola la extracción de metadatos de un conjunto de imágenes para que
+     * las consultas posteriores sean aciertos de caché.
+     * @param uris URIs a precargar
+     */
+    public void prefetch(Collection<Uri> uris) {
+        for (Uri uri : uris) {
+            if (uri != null) {
+                load(uri);
+            }
+        }
+    }
+
+    /**
+     * Consulta los metadatos de varias imágenes y entrega el resultado cuando todas terminaron.
+     * Las que ya están en caché no se vuelven a extraer.
+     * @param uris URIs a consultar
+     * @param callback Receptor del resultado
+     */
+    public void lookupAll(Collection<Uri> uris, BatchCallback callback) {
+        Map<Uri, CompletableFuture<ImageMetadata>> futures = new HashMap<>(uris.size() * 2);
+        for (Uri uri : uris) {
+            if (uri != null) {
+                futures.put(uri, load(uri));
+            }
+        }
+        CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0]))
+            .whenComplete((ignored, error) -> {
+                Map<Uri, ImageMetadata> result = new HashMap<>(futures.size() * 2);
+                for (Map.Entry<Uri, CompletableFuture<ImageMetadata>> entry : futures.entrySet()) {
+                    ImageMetadata metadata = entry.getValue().getNow(null);
+                    if (metadata != null) {
+                        result.put(entry.getKey(), metadata);
+                    }
+                }
+                mainHandler.post(() -> callback.onMetadataLoaded(result));
+            });
+    }
+
+    /**
+     * Guarda metadatos leídos por otro componente, por ejemplo {@link UriValidator},
+     * para que la siguiente consulta no vuelva a abrir la imagen.
+     * @param uri URI de la imagen
+     * @param metadata Metadatos ya extraídos
+     */
+    void offer(Uri uri, ImageMetadata metadata) {
+        CompletableFuture<ImageMetadata> existing = cache.putIfAbsent(uri, CompletableFuture.completedFuture(metadata));
+        if (existing != null && !existing.isDone()) {
+            existing.complete(metadata);
+        }
+    }
+
+    private CompletableFuture<ImageMetadata> load(Uri uri) {
+        CompletableFuture<ImageMetadata> existing = cache.get(uri);
+        if (existing != null) {
+            return existing;
+        }
+
+        CompletableFuture<ImageMetadata> created = new CompletableFuture<>();
+        existing = cache.putIfAbsent(uri, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        executor.execute(() -> {
+            ImageMetadata metadata = null;
+            try {
+                metadata = ImageMetadataExtractor.extractMetadata(context, uri);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Error extracting metadata for URI: " + uri, e);
+            }
+            if (metadata == null) {
+                // No se guarda un fallo para permitir reintentar en la siguiente consulta
+                cache.remove(uri, created);
+            }
+            created.complete(metadata);
+        });
+        return created;
+    }
+}
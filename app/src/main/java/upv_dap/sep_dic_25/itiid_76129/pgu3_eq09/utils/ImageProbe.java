@@ -0,0 +1,130 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.exifinterface.media.ExifInterface;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+
+/**
+ * Sondeo de encabezados que obtiene fecha, dimensiones y orientación sin decodificar píxeles.
+ * Abre la imagen como {@link ParcelFileDescriptor} para que {@link ExifInterface} salte directamente
+ * a los segmentos EXIF en lugar de recorrer el archivo como flujo; si el EXIF no trae dimensiones
+ * (PNG, GIF, WebP o JPEG sin etiquetas) se leen del encabezado con {@code inJustDecodeBounds}.
+ * En ambos casos solo se leen los primeros kilobytes del archivo.
+ */
+public class ImageProbe {
+
+    private static final String TAG = "ImageProbe";
+    private static final String EXIF_DATE_PATTERN = "yyyy:MM:dd HH:mm:ss";
+
+    private ImageProbe() {
+    }
+
+    /**
+     * Lee los metadatos de una imagen.
+     * @param resolver ContentResolver para abrir la URI
+     * @param uri URI de la imagen
+     * @return Metadatos con dimensiones reales, o null si la URI no contiene una imagen legible
+     * @throws IOException si no se pudo abrir la URI
+     */
+    @Nullable
+    public static ImageMetadata probe(ContentResolver resolver, Uri uri) throws IOException {
+        try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "r")) {
+            if (descriptor == null) {
+                return null;
+            }
+            return probe(resolver, uri, descriptor.getFileDescriptor());
+        }
+    }
+
+    /**
+     * Lee los metadatos desde un descriptor ya abierto, para quien también lee otros encabezados del archivo.
+     * @param resolver ContentResolver para abrir un flujo nuevo si el descriptor no es posicionable
+     * @param uri URI de la imagen
+     * @param fd Descriptor posicionado al inicio del archivo; no se cierra
+     * @return Metadatos con dimensiones reales, o null si el archivo no es una imagen legible
+     * @throws IOException si falla la lectura
+     */
+    @Nullable
+    static ImageMetadata probe(ContentResolver resolver, Uri uri, FileDescriptor fd) throws IOException {
+        long captureTime = ImageMetadata.UNKNOWN_TIME;
+        int width = 0;
+        int height = 0;
+        int orientation = ExifInterface.ORIENTATION_NORMAL;
+        try {
+            ExifInterface exif = new ExifInterface(fd);
+            String dateTime = exif.getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+            if (dateTime == null) {
+                dateTime = exif.getAttribute(ExifInterface.TAG_DATETIME);
+            }
+            captureTime = parseDateTime(dateTime);
+            width = exif.getAttributeInt(ExifInterface.TAG_IMAGE_WIDTH, 0);
+            height = exif.getAttributeInt(ExifInterface.TAG_IMAGE_LENGTH, 0);
+            orientation = exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException | RuntimeException e) {
+            // Formato sin EXIF o etiquetas dañadas: las dimensiones se leen del encabezado
+            Log.d(TAG, "No EXIF data for " + uri + ": " + e.getMessage());
+        }
+
+        if (width <= 0 || height <= 0) {
+            int[] bounds = readBounds(resolver, uri, fd);
+            if (bounds == null) {
+                return null;
+            }
+            width = bounds[0];
+            height = bounds[1];
+        }
+        return new ImageMetadata(captureTime, width, height, orientation);
+    }
+
+    /**
+     * Convierte una fecha EXIF ("yyyy:MM:dd HH:mm:ss", hora local) a milisegundos desde epoch.
+     * @param dateTime Texto de la etiqueta EXIF (puede ser null)
+     * @return Milisegundos desde epoch, o {@link ImageMetadata#UNKNOWN_TIME} si no se pudo interpretar
+     */
+    static long parseDateTime(@Nullable String dateTime) {
+        if (dateTime == null) {
+            return ImageMetadata.UNKNOWN_TIME;
+        }
+        SimpleDateFormat format = new SimpleDateFormat(EXIF_DATE_PATTERN, Locale.US);
+        format.setLenient(false);
+        try {
+            Date date = format.parse(dateTime.trim());
+            return date != null ? date.getTime() : ImageMetadata.UNKNOWN_TIME;
+        } catch (ParseException e) {
+            // Algunas cámaras escriben espacios o ceros cuando no conocen la fecha
+            return ImageMetadata.UNKNOWN_TIME;
+        }
+    }
+
+    @Nullable
+    private static int[] readBounds(ContentResolver resolver, Uri uri, FileDescriptor fd) throws IOException {
+        try {
+            // ExifInterface dejó el descriptor en otra posición; el decodificador lee desde la actual
+            Os.lseek(fd, 0, OsConstants.SEEK_SET);
+        } catch (ErrnoException e) {
+            // Descriptor no posicionable (por ejemplo, una tubería): se abre un flujo nuevo
+            return BitmapDecoder.readBounds(resolver, uri);
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFileDescriptor(fd, null, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        return new int[]{options.outWidth, options.outHeight};
+    }
+}
@@ -0,0 +1,145 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Datos del marcador SOF de un JPEG, leídos sin decodificar la imagen.
+ * Sirven para decidir si los bytes originales pueden incrustarse tal cual en el PDF con DCTDecode.
+ */
+public class JpegHeader {
+
+    private static final String JPEG_MIME_TYPE = "image/jpeg";
+    private static final int HEADER_BUFFER_SIZE = 8 * 1024;
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_TEM = 0x01;
+    private static final int MARKER_SOF0 = 0xC0;
+    private static final int MARKER_SOF1 = 0xC1;
+    private static final int MARKER_SOF2 = 0xC2;
+
+    private final int width;
+    private final int height;
+    private final int components;
+
+    JpegHeader(int width, int height, int components) {
+        this.width = width;
+        this.height = height;
+        this.components = components;
+    }
+
+    /**
+     * Lee el encabezado de una imagen si es un JPEG.
+     * @param resolver ContentResolver para abrir la URI
+     * @param uri URI de la imagen
+     * @return Encabezado o null si la imagen no es JPEG o no se pudo leer
+     */
+    @Nullable
+    public static JpegHeader probe(ContentResolver resolver, Uri uri) {
+        String type = resolver.getType(uri);
+        if (type != null && !JPEG_MIME_TYPE.equalsIgnoreCase(type)) {
+            return null;
+        }
+        try (InputStream inputStream = resolver.openInputStream(uri)) {
+            return inputStream != null ? read(inputStream) : null;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Recorre los marcadores hasta el SOF; solo se leen los primeros kilobytes del archivo.
+     * @param inputStream Flujo al inicio del archivo
+     * @return Encabezado o null si no es un JPEG secuencial o progresivo con codificación Huffman
+     * @throws IOException si falla la lectura
+     */
+    @Nullable
+    public static JpegHeader read(InputStream inputStream) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(inputStream, HEADER_BUFFER_SIZE));
+        try {
+            if (data.readUnsignedByte() != 0xFF || data.readUnsignedByte() != MARKER_SOI) {
+                return null;
+            }
+            while (true) {
+                int marker = nextMarker(data);
+                if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                    return null;
+                }
+                if (marker == MARKER_TEM || (marker >= 0xD0 && marker <= 0xD7)) {
+                    continue;
+                }
+
+                int length = data.readUnsignedShort() - 2;
+                if (marker == MARKER_SOF0 || marker == MARKER_SOF1 || marker == MARKER_SOF2) {
+                    int precision = data.readUnsignedByte();
+                    int height = data.readUnsignedShort();
+                    int width = data.readUnsignedShort();
+                    int components = data.readUnsignedByte();
+                    if (precision != 8 || width <= 0 || height <= 0) {
+                        return null;
+                    }
+                    return new JpegHeader(width, height, components);
+                }
+                if (marker >= 0xC3 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+                    // Sin pérdida o con codificación aritmética: los visores no lo soportan de forma fiable
+                    return null;
+                }
+                skipFully(data, length);
+            }
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+
+    /**
+     * Indica si el espacio de color se puede declarar directamente en el PDF.
+     * Los JPEG CMYK necesitan invertir canales según el marcador de Adobe, así que se excluyen.
+     * @return true para escala de grises o RGB
+     */
+    public boolean isEmbeddable() {
+        return components == 1 || components == 3;
+    }
+
+    private static int nextMarker(DataInputStream data) throws IOException {
+        int value = data.readUnsignedByte();
+        while (value != 0xFF) {
+            value = data.readUnsignedByte();
+        }
+        // Se omiten los bytes de relleno 0xFF
+        while (value == 0xFF) {
+            value = data.readUnsignedByte();
+        }
+        return value;
+    }
+
+    private static void skipFully(DataInputStream data, int count) throws IOException {
+        int remaining = count;
+        while (remaining > 0) {
+            int skipped = data.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.graphics.RectF;
+import android.net.Uri;
+import java.io.IOException;
+
+/**
+ * Destino que puede incrustar los bytes originales de un JPEG sin decodificarlo.
+ * {@link PDFGenerator} solo planea imágenes sin decodificar cuando todos los destinos de la exportación
+ * implementan esta interfaz.
+ */
+public interface JpegPassthroughBackend extends PdfBackend {
+
+    /**
+     * Incrusta el JPEG original sin decodificarlo.
+     * @param resolver ContentResolver para abrir la URI
+     * @param uri URI del JPEG
+     * @param header Encabezado leído con {@link JpegHeader#probe}
+     * @param destination Rectángulo de la página donde se ve la imagen ya orientada
+     * @param orientation Orientación EXIF de la imagen
+     * @throws IOException si no se pudo leer la imagen o escribir el documento
+     */
+    void drawJpeg(ContentResolver resolver, Uri uri, JpegHeader header, RectF destination, int orientation)
+        throws IOException;
+}
@@ -0,0 +1,96 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Environment;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Escribe el documento en Documents/HomeroImageArranger a través de MediaStore, sin permisos
+ * de almacenamiento. La entrada se crea como pendiente para que otras apps no la vean incompleta
+ * y MediaStore asigna un nombre distinto si ya existe uno igual.
+ */
+public class MediaStoreOutput extends ExportOutput {
+
+    private static final String TAG = "MediaStoreOutput";
+    private static final String RELATIVE_PATH = Environment.DIRECTORY_DOCUMENTS + "/HomeroImageArranger";
+    private static final String MIME_TYPE = "application/pdf";
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private String displayName;
+
+    /**
+     * Inserta la entrada pendiente y abre su descriptor de escritura.
+     * @param context Contexto de la aplicación
+     * @param fileName Nombre deseado del documento
+     * @throws IOException si MediaStore no creó la entrada o no se pudo abrir
+     */
+    public MediaStoreOutput(Context context, String fileName) throws IOException {
+        this.resolver = context.getContentResolver();
+        this.displayName = fileName;
+
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.DISPLAY_NAME, fileName);
+        values.put(MediaStore.MediaColumns.MIME_TYPE, MIME_TYPE);
+        values.put(MediaStore.MediaColumns.RELATIVE_PATH, RELATIVE_PATH);
+        values.put(MediaStore.MediaColumns.IS_PENDING, 1);
+        Uri inserted = resolver.insert(MediaStore.Files.getContentUri(MediaStore.VOLUME_EXTERNAL_PRIMARY), values);
+        if (inserted == null) {
+            throw new IOException("MediaStore no creó la entrada para " + fileName);
+        }
+        this.uri = inserted;
+
+        try {
+            ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "w");
+            if (descriptor == null) {
+                throw new IOException("No fue posible abrir " + uri);
+            }
+            // Cerrar el canal cierra también el descriptor
+            open(new ParcelFileDescriptor.AutoCloseOutputStream(descriptor).getChannel());
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+    }
+
+    @Override
+    public Uri getUri() {
+        return uri;
+    }
+
+    @Override
+    public String getLocation() {
+        return RELATIVE_PATH + "/" + displayName;
+    }
+
+    @Override
+    protected void publish() throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.MediaColumns.IS_PENDING, 0);
+        if (resolver.update(uri, values, null, null) != 1) {
+            throw new IOException("No fue posible publicar " + uri);
+        }
+        // MediaStore pudo agregar un sufijo para no repetir el nombre
+        try (Cursor cursor = resolver.query(uri, new String[]{MediaStore.MediaColumns.DISPLAY_NAME},
+                null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                displayName = cursor.getString(0);
+            }
+        }
+    }
+
+    @Override
+    protected void discard() {
+        if (resolver.delete(uri, null, null) != 1) {
+            Log.w(TAG, "Could not delete export: " + uri);
+        }
+    }
+}
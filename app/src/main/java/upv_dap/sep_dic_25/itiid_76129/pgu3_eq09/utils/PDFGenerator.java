@@ -1,19 +1,21 @@
 package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
 
+import android.content.ContentResolver;
 import android.content.Context;
-import android.graphics.Bitmap;
-import android.graphics.Canvas;
-import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
-import android.os.Environment;
-import android.provider.MediaStore;
+import android.graphics.RectF;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.util.Log;
-import android.widget.Toast;
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.R;
 import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
-import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageSize;
 
 /**
  * Clase utilitaria para generar documentos esto solo es para acompletar el PDF con collages de imágenes
@@ -22,168 +24,224 @@ import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
 public class PDFGenerator {
     
     private static final String TAG = "PDFGenerator";
-    private static final int PDF_SCALE = 2;
+
     /**
-     * Tipos de página soportados para la exportación del PDF.
+     * Listener para informar el avance de la exportación página por página.
      */
-    public enum PageSize {
-        LETTER(612 * PDF_SCALE, 792 * PDF_SCALE, "carta"),
-        LEGAL(612 * PDF_SCALE, 1008 * PDF_SCALE, "oficio");
-
-        private final int width;
-        private final int height;
-        private final String suffix;
-
-        PageSize(int width, int height, String suffix) {
-            this.width = width;
-            this.height = height;
-            this.suffix = suffix;
-        }
-
-        public int getWidth() {
-            return width;
-        }
-
-        public int getHeight() {
-            return height;
-        }
-
-        public String getSuffix() {
-            return suffix;
-        }
+    public interface ProgressListener {
+        void onPageRendered(int pageNumber, int totalPages);
     }
 
     /**
-     * Genera un PDF con las páginas proporcionadas organizadas como se muestran en pantalla.
+     * Genera un PDF por cada tamaño de página con las páginas organizadas como se muestran en pantalla.
+     * Las imágenes se decodifican en paralelo con {@link PageRasterizer} mientras este hilo
+     * dibuja y cierra las páginas en orden. Cada imagen se decodifica una sola vez y se dibuja en
+     * todos los documentos, que se escriben a la vez. Con el destino {@link ExportOptions.Backend#DIRECT}
+     * los JPEG se copian al PDF sin decodificarse y cada página se escribe al archivo en cuanto
+     * se termina, por lo que la memoria no crece con el número de páginas.
+     * Cada documento se escribe en un {@link ExportOutput} con nombre único y solo se publica
+     * cuando todos están completos.
+     * Antes de dibujar, {@link DecodePlanner} lee los encabezados y ajusta la calidad de las imágenes que no
+     * caben en la memoria disponible; esos ajustes y las imágenes ilegibles se registran en {@code report}.
+     * Los tiempos de cada etapa y los contadores se acumulan en {@code metrics} y se resumen en el log al terminar.
+     * Debe invocarse desde un hilo de fondo; ver {@link PdfExportEngine}.
      * @param context Contexto de la aplicación
      * @param pages Conjunto de páginas con sus imágenes
-     * @param pageSize Tamaño objetivo del PDF
+     * @param pageSizes Tamaños objetivo, uno por documento y sin repetir
+     * @param options Paralelismo, presupuesto de memoria, perfil de calidad, escritor y destino de la exportación
+     * @param metrics Receptor de tiempos por etapa y contadores de la exportación
+     * @param report Receptor de las imágenes exportadas con menor calidad u omitidas
+     * @param listener Receptor del progreso por página (puede ser null)
+     * @param cancellationSignal Señal revisada entre páginas e imágenes (puede ser null)
+     * @return Documentos publicados, en el orden de los tamaños
+     * @throws IOException si no fue posible escribir algún archivo
+     * @throws ExportValidationException si no hay páginas, tamaños o imágenes que exportar
+     * @throws android.os.OperationCanceledException si la exportación fue cancelada
      */
-    public static void generatePDF(Context context, List<ImagePage> pages, PageSize pageSize) {
+    public static List<ExportOutput> generatePDF(Context context, List<ImagePage> pages, List<PageSize> pageSizes,
+                                                 ExportOptions options, PerformanceMetrics metrics,
+                                                 QualityReport report, ProgressListener listener,
+                                                 CancellationSignal cancellationSignal) throws IOException {
         if (pages == null || pages.isEmpty()) {
-            Toast.makeText(context, "No hay páginas para generar", Toast.LENGTH_SHORT).show();
-            return;
+            throw new ExportValidationException(R.string.export_error_no_pages, "No pages to export");
+        }
+        if (pageSizes == null || pageSizes.isEmpty()) {
+            throw new ExportValidationException(R.string.export_error_no_page_sizes, "No page sizes selected");
+        }
+        if (!containsImages(pages)) {
+            throw new ExportValidationException(R.string.export_error_no_images, "No images to export");
         }
 
-        PdfDocument pdfDocument = new PdfDocument();
-        Paint paint = new Paint();
-        boolean containsImages = false;
-
-        for (int index = 0; index < pages.size(); index++) {
-            PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(
-                pageSize.getWidth(),
-                pageSize.getHeight(),
-                index + 1
-            ).create();
-
-            PdfDocument.Page page = pdfDocument.startPage(pageInfo);
-            Canvas canvas = page.getCanvas();
-
-            ImagePage currentPage = pages.get(index);
-            if (currentPage.getImageCount() > 0) {
-                containsImages = true;
+        BitmapPool.getInstance().resetStats();
+        ContentResolver resolver = context.getContentResolver();
+        float pixelsPerPoint = options.getProfile().getPixelsPerPoint();
+        List<ExportOutput> outputs = new ArrayList<>(pageSizes.size());
+        List<PdfBackend> backends = new ArrayList<>(pageSizes.size());
+        List<JpegPassthroughBackend> passthroughBackends = new ArrayList<>(pageSizes.size());
+        try {
+            for (PageSize pageSize : pageSizes) {
+                ExportOutput output = ExportOutput.create(context, buildFileName(pageSize, options.getProfile()),
+                    options.getDestination());
+                outputs.add(output);
+                PdfBackend backend = createBackend(options, output.getOutputStream());
+                backends.add(backend);
+                if (backend instanceof JpegPassthroughBackend) {
+                    passthroughBackends.add((JpegPassthroughBackend) backend);
+                }
             }
-            drawPage(canvas, context, paint, currentPage, pageSize);
+            // Una imagen sin decodificar se copia en todos los formatos, así que todos deben admitirlo
+            boolean jpegPassthrough = passthroughBackends.size() == backends.size();
+
+            DecodePlanner.Plan plan = new DecodePlanner(resolver, options, jpegPassthrough, metrics, report,
+                UriValidator.getInstance(context).getUnreadableUris(), ImageMetadataService.getInstance(context))
+                .plan(pages, pageSizes, cancellationSignal);
+            try (PageRasterizer rasterizer = new PageRasterizer(resolver, plan, options, metrics, report,
+                     cancellationSignal)) {
+                for (int index = 0; index < pages.size(); index++) {
+                    throwIfCanceled(cancellationSignal);
+
+                    for (int target = 0; target < backends.size(); target++) {
+                        PageSize pageSize = pageSizes.get(target);
+                        backends.get(target).startPage(pageSize.getWidth(), pageSize.getHeight(), pixelsPerPoint);
+                    }
+                    drawPage(backends, passthroughBackends, resolver, rasterizer, metrics, cancellationSignal);
+                    long writeStart = metrics.begin(PerformanceMetrics.Stage.WRITE);
+                    try {
+                        for (PdfBackend backend : backends) {
+                            backend.finishPage();
+                        }
+                    } finally {
+                        metrics.end(PerformanceMetrics.Stage.WRITE, writeStart);
+                    }
+
+                    if (listener != null) {
+                        listener.onPageRendered(index + 1, pages.size());
+                    }
+                }
 
-            pdfDocument.finishPage(page);
+                metrics.max(PerformanceMetrics.Counter.PEAK_BITMAP_BYTES, rasterizer.getPeakBytes());
+            }
+            throwIfCanceled(cancellationSignal);
+            long writeStart = metrics.begin(PerformanceMetrics.Stage.WRITE);
+            try {
+                for (PdfBackend backend : backends) {
+                    backend.finish();
+                }
+                // Todas las salidas llegan al disco antes de publicar la primera
+                for (ExportOutput output : outputs) {
+                    output.prepare();
+                }
+                commitAll(outputs);
+                for (ExportOutput output : outputs) {
+                    metrics.add(PerformanceMetrics.Counter.BYTES_WRITTEN, output.getBytesWritten());
+                    Log.d(TAG, "PDF saved successfully at: " + output.getLocation());
+                }
+            } finally {
+                metrics.end(PerformanceMetrics.Stage.WRITE, writeStart);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperationCanceledException();
+        } finally {
+            BitmapPool pool = BitmapPool.getInstance();
+            metrics.add(PerformanceMetrics.Counter.POOL_HITS, pool.getHits());
+            metrics.add(PerformanceMetrics.Counter.POOL_MISSES, pool.getMisses());
+            metrics.finish();
+            Log.i(TAG, "Export metrics: " + metrics);
+            // Las salidas que no se confirmaron descartan su documento incompleto
+            for (PdfBackend backend : backends) {
+                closeQuietly(backend);
+            }
+            for (ExportOutput output : outputs) {
+                output.close();
+            }
         }
+        return outputs;
+    }
 
-        if (!containsImages) {
-            pdfDocument.close();
-            Toast.makeText(context, "Agrega al menos una imagen antes de generar el PDF", Toast.LENGTH_SHORT).show();
-            return;
+    /**
+     * Publica todas las salidas o ninguna: si una falla, se retiran las que ya se habían publicado.
+     */
+    private static void commitAll(List<ExportOutput> outputs) throws IOException {
+        int committed = 0;
+        try {
+            for (ExportOutput output : outputs) {
+                output.commit();
+                committed++;
+            }
+        } catch (IOException | RuntimeException e) {
+            for (int i = 0; i < committed; i++) {
+                outputs.get(i).revoke();
+            }
+            throw e;
         }
-
-        savePDF(context, pdfDocument, pageSize);
-        pdfDocument.close();
     }
 
-    private static void drawPage(Canvas canvas, Context context, Paint paint, ImagePage page, PageSize pageSize) {
-        List<PageItem> items = page.getItems();
-        if (items.isEmpty()) {
-            return;
+    private static PdfBackend createBackend(ExportOptions options, OutputStream outputStream) throws IOException {
+        if (options.getBackend() == ExportOptions.Backend.PDF_DOCUMENT) {
+            return new PdfDocumentBackend(outputStream);
         }
+        return new DirectPdfWriter(outputStream, options.getProfile().getJpegQuality());
+    }
 
-        int columns = Math.max(1, page.getColumns());
-        int rows = page.getEffectiveRows();
-        int requiredRows = (int) Math.ceil(items.size() / (double) columns);
-        rows = Math.max(rows, requiredRows);
-
-        float cellWidth = pageSize.getWidth() / (float) columns;
-        float cellHeight = pageSize.getHeight() / (float) rows;
-
-        for (int i = 0; i < items.size(); i++) {
-            PageItem item = items.get(i);
-            if (item.isPlaceholder() || item.getUri() == null) {
-                continue;
+    private static boolean containsImages(List<ImagePage> pages) {
+        for (ImagePage page : pages) {
+            if (page.getImageCount() > 0) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            int column = i % columns;
-            int row = i / columns;
+    private static void throwIfCanceled(CancellationSignal cancellationSignal) {
+        if (cancellationSignal != null) {
+            cancellationSignal.throwIfCanceled();
+        }
+    }
 
+    private static void drawPage(List<PdfBackend> backends, List<JpegPassthroughBackend> passthroughBackends,
+                                 ContentResolver resolver, PageRasterizer rasterizer, PerformanceMetrics metrics,
+                                 CancellationSignal cancellationSignal)
+            throws InterruptedException, IOException {
+        PageRasterizer.DecodedImage image;
+        while ((image = rasterizer.nextImage()) != null) {
+            long drawStart = metrics.begin(PerformanceMetrics.Stage.DRAW);
             try {
-                Bitmap original = MediaStore.Images.Media.getBitmap(context.getContentResolver(), item.getUri());
-                if (original == null) {
-                    continue;
-                }
-
-                float scale = Math.min(
-                    cellWidth / original.getWidth(),
-                    cellHeight / original.getHeight()
-                );
-
-                int targetWidth = Math.max(1, Math.round(original.getWidth() * scale));
-                int targetHeight = Math.max(1, Math.round(original.getHeight() * scale));
-
-                Bitmap scaled = Bitmap.createScaledBitmap(original, targetWidth, targetHeight, true);
-
-                float drawX = column * cellWidth + (cellWidth - targetWidth) / 2f;
-                float drawY = row * cellHeight + (cellHeight - targetHeight) / 2f;
-
-                canvas.drawBitmap(scaled, drawX, drawY, paint);
-                Log.d(TAG, "Image pasted at X: " + drawX + " Y: " + drawY);
-
-                if (scaled != original) {
-                    scaled.recycle();
+                // La misma imagen decodificada se dibuja en todos los formatos
+                for (int target = 0; target < backends.size(); target++) {
+                    RectF destination = image.getDestination(target);
+                    // La orientación EXIF se aplica en la misma transformación que coloca la imagen
+                    if (image.isJpegPassthrough()) {
+                        passthroughBackends.get(target).drawJpeg(resolver, image.getUri(), image.getJpegHeader(),
+                            destination, image.getOrientation());
+                    } else {
+                        backends.get(target).drawBitmap(image.getBitmap(), destination, image.getOrientation());
+                    }
                 }
-                original.recycle();
-
-            } catch (Exception e) {
-                Log.e(TAG, "Error processing image for PDF", e);
+            } finally {
+                metrics.end(PerformanceMetrics.Stage.DRAW, drawStart);
+                rasterizer.release(image);
             }
+            throwIfCanceled(cancellationSignal);
+        }
+    }
+
+    private static void closeQuietly(PdfBackend backend) {
+        try {
+            backend.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close PDF backend", e);
         }
     }
 
     /**
-     * Guarda el documento PDF en el sistema de archivos
-     * @param context Contexto de la aplicación
-     * @param pdfDocument Documento PDF a guardar
+     * Arma el nombre del documento; la fecha evita reemplazar exportaciones anteriores
      * @param pageSize Tamaño de página utilizado
+     * @param profile Perfil de calidad utilizado
+     * @return Nombre del PDF
      */
-    private static void savePDF(Context context, PdfDocument pdfDocument, PageSize pageSize) {
-        String directory = "Documents";
-        String folderName = "HomeroImageArranger";
-        String fileName = "collage_" + pageSize.getSuffix() + ".pdf";
-        File file = new File(Environment.getExternalStorageDirectory(),
-            directory + "/" + folderName + "/" + fileName);
-
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-
-        try {
-            FileOutputStream fileOutputStream = new FileOutputStream(file);
-            pdfDocument.writeTo(fileOutputStream);
-            fileOutputStream.close();
-
-            Toast.makeText(context, "PDF generado en: " + file.getAbsolutePath(),
-                Toast.LENGTH_LONG).show();
-            Log.d(TAG, "PDF saved successfully at: " + file.getAbsolutePath());
-
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to save PDF", e);
-            Toast.makeText(context, "No fue posible generar el PDF", Toast.LENGTH_SHORT).show();
-        }
+    private static String buildFileName(PageSize pageSize, ExportProfile profile) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+        return "collage_" + pageSize.getSuffix() + "_" + profile.getSuffix() + "_" + timestamp + ".pdf";
     }
 }
@@ -0,0 +1,215 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageSize;
+
+/**
+ * Motor de composición que convierte una página y su tamaño en rectángulos de celda precalculados.
+ * Es la única fuente de geometría para la exportación, la vista previa y las pruebas; no depende
+ * de Android y las consultas repetidas no reservan memoria.
+ */
+public class PageLayoutEngine {
+
+    private static final int MAX_CACHED_LAYOUTS = 64;
+    private static final int MIN_PREVIEW_CELL = 120;
+
+    private static PageLayoutEngine instance;
+
+    private final Map<LayoutKey, PageLayout> layouts =
+        new LinkedHashMap<LayoutKey, PageLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LayoutKey, PageLayout> eldest) {
+                return size() > MAX_CACHED_LAYOUTS;
+            }
+        };
+    // Llave reutilizada para consultar la caché sin crear objetos
+    private final LayoutKey probe = new LayoutKey();
+
+    /**
+     * Geometría inmutable de una página: una celda por espacio en orden de lectura.
+     */
+    public static class PageLayout {
+        private final int slotCount;
+        private final int rows;
+        private final int columns;
+        private final float cellWidth;
+        private final float cellHeight;
+        // {izquierda, arriba} de cada celda
+        private final float[] origins;
+
+        /**
+         * Precalcula las celdas sin pasar por la caché; las filas deben ser ya las efectivas.
+         */
+        public PageLayout(int slotCount, int rows, int columns, int width, int height) {
+            this.slotCount = slotCount;
+            this.rows = rows;
+            this.columns = columns;
+            this.cellWidth = width / (float) columns;
+            this.cellHeight = height / (float) rows;
+            this.origins = new float[slotCount * 2];
+            for (int i = 0; i < slotCount; i++) {
+                origins[i * 2] = (i % columns) * cellWidth;
+                origins[i * 2 + 1] = (i / columns) * cellHeight;
+            }
+        }
+
+        public int getSlotCount() {
+            return slotCount;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public int getColumns() {
+            return columns;
+        }
+
+        public float getCellWidth() {
+            return cellWidth;
+        }
+
+        public float getCellHeight() {
+            return cellHeight;
+        }
+
+        public float getCellLeft(int index) {
+            return origins[index * 2];
+        }
+
+        public float getCellTop(int index) {
+            return origins[index * 2 + 1];
+        }
+
+        /**
+         * Ajusta un contenido dentro de la celda conservando su proporción y centrándolo.
+         * @param index Posición del espacio dentro de la página
+         * @param contentWidth Ancho del contenido
+         * @param contentHeight Alto del contenido
+         * @param out Arreglo de al menos 4 posiciones donde se escribe {izquierda, arriba, derecha, abajo}
+         */
+        public void fit(int index, int contentWidth, int contentHeight, float[] out) {
+            float scale = Math.min(cellWidth / contentWidth, cellHeight / contentHeight);
+            float drawWidth = contentWidth * scale;
+            float drawHeight = contentHeight * scale;
+            float left = origins[index * 2] + (cellWidth - drawWidth) / 2f;
+            float top = origins[index * 2 + 1] + (cellHeight - drawHeight) / 2f;
+            out[0] = left;
+            out[1] = top;
+            out[2] = left + drawWidth;
+            out[3] = top + drawHeight;
+        }
+    }
+
+    /**
+     * Obtiene la instancia compartida del motor.
+     * @return Motor de composición
+     */
+    public static synchronized PageLayoutEngine getInstance() {
+        if (instance == null) {
+            instance = new PageLayoutEngine();
+        }
+        return instance;
+    }
+
+    /**
+     * Filas necesarias para acomodar todos los espacios respetando las filas pedidas.
+     * @param slotCount Número de espacios de la página
+     * @param rows Filas elegidas por el usuario
+     * @param columns Columnas de la rejilla
+     * @return Filas efectivas (mínimo 1)
+     */
+    public static int effectiveRows(int slotCount, int rows, int columns) {
+        columns = Math.max(1, columns);
+        int required = (slotCount + columns - 1) / columns;
+        return Math.max(rows, Math.max(1, required));
+    }
+
+    /**
+     * Lado de las celdas cuadradas de la vista previa en pantalla.
+     * @param availableWidth Ancho disponible de la cuadrícula (0 si aún no se mide)
+     * @param columns Columnas de la rejilla
+     * @param fallbackSize Lado a usar mientras la vista no tiene tamaño
+     * @return Lado de la celda en píxeles
+     */
+    public static int previewCellSize(int availableWidth, int columns, int fallbackSize) {
+        if (availableWidth <= 0) {
+            return fallbackSize;
+        }
+        return Math.max(MIN_PREVIEW_CELL, availableWidth / Math.max(1, columns));
+    }
+
+    /**
+     * Composición de una página para un tamaño de hoja, en píxeles.
+     * @param page Página con sus espacios y rejilla
+     * @param pageSize Tamaño de hoja
+     * @param pixelsPerPoint Densidad con la que se rasteriza la hoja
+     * @return Geometría compartida; no debe modificarse
+     */
+    public PageLayout layout(ImagePage page, PageSize pageSize, float pixelsPerPoint) {
+        return layout(page.getTotalSlots(), page.getRows(), page.getColumns(),
+            pageSize.getPixelWidth(pixelsPerPoint), pageSize.getPixelHeight(pixelsPerPoint));
+    }
+
+    /**
+     * Composición para una cantidad de espacios y rejilla dadas; el resultado se guarda en caché
+     * por (espacios, filas, columnas, tamaño).
+     * @param slotCount Número de espacios
+     * @param rows Filas elegidas
+     * @param columns Columnas elegidas
+     * @param width Ancho de la hoja
+     * @param height Alto de la hoja
+     * @return Geometría compartida; no debe modificarse
+     */
+    public synchronized PageLayout layout(int slotCount, int rows, int columns, int width, int height) {
+        columns = Math.max(1, columns);
+        rows = effectiveRows(slotCount, rows, columns);
+        probe.set(slotCount, rows, columns, width, height);
+
+        PageLayout layout = layouts.get(probe);
+        if (layout == null) {
+            layout = new PageLayout(slotCount, rows, columns, width, height);
+            LayoutKey key = new LayoutKey();
+            key.set(slotCount, rows, columns, width, height);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    private static class LayoutKey {
+        int slotCount;
+        int rows;
+        int columns;
+        int width;
+        int height;
+
+        void set(int slotCount, int rows, int columns, int width, int height) {
+            this.slotCount = slotCount;
+            this.rows = rows;
+            this.columns = columns;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof LayoutKey)) {
+                return false;
+            }
+            LayoutKey key = (LayoutKey) other;
+            return slotCount == key.slotCount && rows == key.rows && columns == key.columns
+                && width == key.width && height == key.height;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = slotCount;
+            result = 31 * result + rows;
+            result = 31 * result + columns;
+            result = 31 * result + width;
+            return 31 * result + height;
+        }
+    }
+}
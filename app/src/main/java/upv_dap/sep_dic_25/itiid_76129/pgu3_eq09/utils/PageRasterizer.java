@@ -0,0 +1,433 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ComponentCallbacks2;
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Etapa de rasterizado que decodifica en paralelo las imágenes de las páginas siguientes
+ * mientras el hilo escritor dibuja la página actual.
+ * Las imágenes se entregan en el mismo orden en que aparecen en el documento y cada una
+ * reserva su tamaño en un {@link BitmapMemoryBudget} hasta que el escritor la libera.
+ * Los bitmaps decodificados se guardan en {@link BitmapCache}, que es su dueño; una segunda
+ * exportación del mismo proyecto los reutiliza sin volver a decodificar. Los que la caché no
+ * acepta por su tamaño vuelven a {@link BitmapPool} cuando el escritor los libera.
+ * Si el destino admite JPEG sin decodificar, esas imágenes solo se sondean y se entregan sin bitmap.
+ * Con varios tamaños de página cada imagen se decodifica una sola vez, al tamaño de la celda más
+ * grande entre todos los formatos, y se entrega con un rectángulo de destino por formato.
+ * El tamaño, la configuración y la reserva de cada imagen vienen del {@link DecodePlanner.Plan};
+ * si aun así la decodificación se queda sin memoria se reintenta a la mitad del tamaño, y toda
+ * imagen degradada u omitida queda registrada en el {@link QualityReport}.
+ */
+public class PageRasterizer implements AutoCloseable {
+
+    private static final String TAG = "PageRasterizer";
+
+    private final ContentResolver resolver;
+    private final BitmapMemoryBudget budget;
+    private final BitmapPool pool = BitmapPool.getInstance();
+    private final ExecutorService workers;
+    private final BlockingQueue<Slot> queue = new LinkedBlockingQueue<>();
+    private final Thread scheduler;
+    @Nullable
+    private final CancellationSignal cancellationSignal;
+    private final PerformanceMetrics metrics;
+    private final QualityReport report;
+    private volatile boolean closed;
+    private boolean aborted;
+
+    /**
+     * Imagen decodificada lista para dibujarse en su celda.
+     */
+    public static class DecodedImage {
+        private final Bitmap bitmap;
+        private final Uri uri;
+        private final JpegHeader jpegHeader;
+        private final RectF[] destinations;
+        private final int orientation;
+        private long reservedBytes;
+
+        DecodedImage(Bitmap bitmap, RectF[] destinations, int orientation) {
+            this(bitmap, null, null, destinations, orientation);
+        }
+
+        DecodedImage(Uri uri, JpegHeader jpegHeader, RectF[] destinations, int orientation) {
+            this(null, uri, jpegHeader, destinations, orientation);
+        }
+
+        private DecodedImage(@Nullable Bitmap bitmap, @Nullable Uri uri, @Nullable JpegHeader jpegHeader,
+                             RectF[] destinations, int orientation) {
+            this.bitmap = bitmap;
+            this.uri = uri;
+            this.jpegHeader = jpegHeader;
+            this.destinations = destinations;
+            this.orientation = orientation;
+        }
+
+        /**
+         * @return Bitmap a dibujar, o null si la imagen se incrusta como JPEG original
+         */
+        @Nullable
+        public Bitmap getBitmap() {
+            return bitmap;
+        }
+
+        /**
+         * @return true si la imagen no se decodificó y debe copiarse con {@link JpegPassthroughBackend#drawJpeg}
+         */
+        public boolean isJpegPassthrough() {
+            return jpegHeader != null;
+        }
+
+        @Nullable
+        public Uri getUri() {
+            return uri;
+        }
+
+        @Nullable
+        public JpegHeader getJpegHeader() {
+            return jpegHeader;
+        }
+
+        /**
+         * @return Orientación EXIF; el bitmap o JPEG se entrega sin rotar y se endereza al dibujarlo
+         */
+        public int getOrientation() {
+            return orientation;
+        }
+
+        /**
+         * @param target Índice del tamaño de página, en el orden recibido por el constructor
+         * @return Rectángulo de la imagen ya orientada en píxeles de ese formato
+         */
+        public RectF getDestination(int target) {
+            return destinations[target];
+        }
+    }
+
+    /**
+     * Entrada de la cola: una imagen en proceso o la marca de fin de página.
+     */
+    private static class Slot {
+        static final Slot PAGE_END = new Slot(null, 0, -1, -1, null);
+        static final Slot ABORTED = new Slot(null, 0, -1, -1, null);
+
+        final Future<DecodedImage> future;
+        final long reservedBytes;
+        final int pageIndex;
+        final int slotIndex;
+        final Uri uri;
+
+        Slot(Future<DecodedImage> future, long reservedBytes, int pageIndex, int slotIndex, Uri uri) {
+            this.future = future;
+            this.reservedBytes = reservedBytes;
+            this.pageIndex = pageIndex;
+            this.slotIndex = slotIndex;
+            this.uri = uri;
+        }
+    }
+
+    /**
+     * El reintento a la mitad del tamaño tras quedarse sin memoria no produjo bitmap.
+     * Se distingue de {@link QualityReport.Reason#OUT_OF_MEMORY}, que indica que el reintento sí funcionó.
+     */
+    private static class RetryFailedException extends IOException {
+        RetryFailedException(Uri uri) {
+            super("Sin bitmap al reintentar a la mitad del tamaño: " + uri);
+        }
+    }
+
+    /**
+     * Inicia la decodificación anticipada de todas las páginas.
+     * @param resolver ContentResolver para abrir las URIs
+     * @param plan Plan de {@link DecodePlanner} con la rejilla y la decisión de cada imagen
+     * @param options Número de hilos
+     * @param metrics Receptor de los tiempos de decodificación y de los aciertos de caché
+     * @param report Receptor de las imágenes degradadas u omitidas durante la decodificación
+     * @param cancellationSignal Señal que detiene la planificación (puede ser null)
+     */
+    public PageRasterizer(ContentResolver resolver, DecodePlanner.Plan plan, ExportOptions options,
+                          PerformanceMetrics metrics, QualityReport report,
+                          @Nullable CancellationSignal cancellationSignal) {
+        this.resolver = resolver;
+        this.metrics = metrics;
+        this.report = report;
+        this.budget = new BitmapMemoryBudget(plan.getBudgetBytes());
+        this.cancellationSignal = cancellationSignal;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(options.getWorkerCount(), runnable -> {
+            Thread thread = new Thread(runnable, "pdf-decode-" + threadIndex.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+        this.scheduler = new Thread(() -> schedule(plan), "pdf-decode-scheduler");
+        this.scheduler.start();
+    }
+
+    /**
+     * Espera la siguiente imagen de la página en curso.
+     * El llamador debe invocar {@link #release(DecodedImage)} cuando termine de dibujarla.
+     * @return Imagen decodificada, o null cuando la página ya no tiene más imágenes
+     * @throws InterruptedException si el hilo escritor es interrumpido
+     */
+    @Nullable
+    public DecodedImage nextImage() throws InterruptedException {
+        while (true) {
+            Slot slot = aborted ? Slot.ABORTED : queue.take();
+            if (slot == Slot.PAGE_END) {
+                return null;
+            }
+            if (slot == Slot.ABORTED) {
+                aborted = true;
+                if (cancellationSignal != null) {
+                    cancellationSignal.throwIfCanceled();
+                }
+                throw new IllegalStateException("No fue posible preparar las imágenes");
+            }
+
+            DecodedImage image = null;
+            String failure = "decode failed";
+            try {
+                image = slot.future.get();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Error processing image for PDF", e.getCause());
+                if (e.getCause() instanceof RetryFailedException) {
+                    failure = "out of memory, retry at half size failed";
+                }
+            }
+            if (image == null) {
+                report.add(slot.pageIndex, slot.slotIndex, slot.uri, QualityReport.Reason.OMITTED, failure);
+            }
+
+            if (image != null && image.isJpegPassthrough()) {
+                // No hay bitmap en memoria, así que la reserva se devuelve de inmediato
+                budget.release(slot.reservedBytes);
+                return image;
+            }
+            if (image != null) {
+                image.reservedBytes = slot.reservedBytes;
+                return image;
+            }
+            // La imagen no se pudo decodificar: se omite y se devuelve su reserva
+            budget.release(slot.reservedBytes);
+        }
+    }
+
+    /**
+     * Devuelve al presupuesto la reserva de una imagen ya dibujada y libera su fijación en el pool.
+     * El bitmap no se recicla: pertenece a {@link BitmapCache} o, si no se guardó en ella,
+     * el pool lo recupera al liberarse la fijación.
+     * @param image Imagen obtenida con {@link #nextImage()}
+     */
+    public void release(DecodedImage image) {
+        if (image.getBitmap() != null) {
+            pool.unpin(image.getBitmap());
+        }
+        budget.release(image.reservedBytes);
+        image.reservedBytes = 0;
+    }
+
+    /**
+     * @return Máximo de bytes que llegaron a estar reservados durante la exportación
+     */
+    public long getPeakBytes() {
+        return budget.getPeakBytes();
+    }
+
+    /**
+     * Detiene la planificación, cancela las decodificaciones pendientes y devuelve sus reservas.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.interrupt();
+        workers.shutdown();
+
+        Slot slot;
+        while ((slot = queue.poll()) != null) {
+            if (slot.future == null) {
+                continue;
+            }
+            if (!slot.future.cancel(false)) {
+                // Ya estaba en proceso: se espera para liberar la fijación de su bitmap
+                try {
+                    DecodedImage image = slot.future.get();
+                    if (image != null && image.getBitmap() != null) {
+                        pool.unpin(image.getBitmap());
+                    }
+                } catch (Exception ignored) {
+                    // La decodificación falló; no hay bitmap que liberar
+                }
+            }
+            budget.release(slot.reservedBytes);
+        }
+    }
+
+    private void schedule(DecodePlanner.Plan plan) {
+        boolean completed = false;
+        try {
+            for (int pageIndex = 0; pageIndex < plan.getPageCount(); pageIndex++) {
+                DecodePlanner.PagePlan pagePlan = plan.getPage(pageIndex);
+                PageLayoutEngine.PageLayout[] layouts = pagePlan.getLayouts();
+
+                for (int i = 0; i < pagePlan.getSlotCount(); i++) {
+                    DecodePlanner.ImagePlan imagePlan = pagePlan.getImage(i);
+                    if (imagePlan == null) {
+                        // Espacio vacío, o imagen ilegible ya registrada por el planificador
+                        continue;
+                    }
+                    if (closed || (cancellationSignal != null && cancellationSignal.isCanceled())) {
+                        return;
+                    }
+
+                    // El plan acota el tamaño final del bitmap, así que sirve como reserva
+                    long reservedBytes = imagePlan.getBytes();
+                    budget.acquire(reservedBytes);
+                    int page = pageIndex;
+                    int index = i;
+                    Future<DecodedImage> future = workers.submit(() -> decode(page, index, layouts, imagePlan));
+                    queue.put(new Slot(future, reservedBytes, pageIndex, i, imagePlan.getUri()));
+                }
+                queue.put(Slot.PAGE_END);
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // El pool se apagó mientras se planificaba
+            Log.d(TAG, "Scheduling stopped", e);
+        } finally {
+            if (!completed) {
+                // Despierta al escritor si está esperando una imagen que ya no llegará
+                queue.offer(Slot.ABORTED);
+            }
+        }
+    }
+
+    @Nullable
+    private DecodedImage decode(int pageIndex, int index, PageLayoutEngine.PageLayout[] layouts,
+                                DecodePlanner.ImagePlan imagePlan) throws Exception {
+        metrics.add(PerformanceMetrics.Counter.IMAGES, 1);
+        if (imagePlan.isJpegPassthrough()) {
+            // El planificador ya leyó el encabezado; no hay nada que decodificar
+            metrics.add(PerformanceMetrics.Counter.JPEG_PASSTHROUGH, 1);
+            int orientation = imagePlan.getOrientation();
+            RectF[] destinations = fit(layouts, index, imagePlan.getSourceWidth(), imagePlan.getSourceHeight(),
+                orientation);
+            return new DecodedImage(imagePlan.getUri(), imagePlan.getJpegHeader(), destinations, orientation);
+        }
+
+        long decodeStart = metrics.begin(PerformanceMetrics.Stage.DECODE);
+        Bitmap bitmap;
+        try {
+            bitmap = decodeBitmap(pageIndex, index, imagePlan);
+        } finally {
+            metrics.end(PerformanceMetrics.Stage.DECODE, decodeStart);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        // Los rectángulos se calculan con la proporción del bitmap, así sirven igual para aciertos de caché
+        return new DecodedImage(bitmap,
+            fit(layouts, index, bitmap.getWidth(), bitmap.getHeight(), imagePlan.getOrientation()),
+            imagePlan.getOrientation());
+    }
+
+    @Nullable
+    private Bitmap decodeBitmap(int pageIndex, int index, DecodePlanner.ImagePlan imagePlan) throws Exception {
+        Uri uri = imagePlan.getUri();
+        float boxWidth = imagePlan.getBoxWidth();
+        float boxHeight = imagePlan.getBoxHeight();
+        Bitmap.Config config = imagePlan.getConfig();
+        int cacheWidth = Math.round(boxWidth);
+        int cacheHeight = Math.round(boxHeight);
+        BitmapCache cache = BitmapCache.getInstance();
+
+        Bitmap bitmap = cache.get(uri, cacheWidth, cacheHeight, config);
+        if (bitmap != null && !pool.pin(bitmap)) {
+            // El bitmap fue desalojado y reutilizado entre la consulta y la fijación
+            bitmap = null;
+        }
+        if (bitmap != null) {
+            metrics.add(PerformanceMetrics.Counter.CACHE_HITS, 1);
+            return bitmap;
+        }
+
+        metrics.add(PerformanceMetrics.Counter.CACHE_MISSES, 1);
+        try {
+            bitmap = decodeInBox(imagePlan, boxWidth, boxHeight);
+        } catch (OutOfMemoryError e) {
+            // El heap quedó más lleno de lo que estimó el plan: se vacían las cachés y se reintenta a la mitad
+            Log.w(TAG, "Out of memory decoding " + uri + ", retrying at half size");
+            cache.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            pool.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+            bitmap = decodeInBox(imagePlan, boxWidth / 2, boxHeight / 2);
+            if (bitmap == null) {
+                // Solo se informa OUT_OF_MEMORY si la imagen llega al documento
+                throw new RetryFailedException(uri);
+            }
+            report.add(pageIndex, index, uri, QualityReport.Reason.OUT_OF_MEMORY, "retried at half size");
+            // El bitmap reducido no corresponde a la clave del plan, así que no se guarda en caché
+            returnOnRelease(bitmap);
+            return bitmap;
+        }
+        if (bitmap != null && !cache.put(uri, cacheWidth, cacheHeight, config, bitmap)) {
+            returnOnRelease(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Entrega al pool un bitmap que no quedó en caché; como sigue fijado, el pool
+     * lo recibe cuando {@link #release(DecodedImage)} libera la fijación.
+     */
+    private void returnOnRelease(@Nullable Bitmap bitmap) {
+        if (bitmap != null) {
+            pool.put(bitmap);
+        }
+    }
+
+    @Nullable
+    private Bitmap decodeInBox(DecodePlanner.ImagePlan imagePlan, float boxWidth, float boxHeight)
+            throws Exception {
+        int sourceWidth = imagePlan.getSourceWidth();
+        int sourceHeight = imagePlan.getSourceHeight();
+        float scale = Math.min(boxWidth / sourceWidth, boxHeight / sourceHeight);
+        int targetWidth = Math.max(1, Math.round(sourceWidth * scale));
+        int targetHeight = Math.max(1, Math.round(sourceHeight * scale));
+        return BitmapDecoder.decodeToSize(resolver, imagePlan.getUri(), sourceWidth, sourceHeight,
+            targetWidth, targetHeight, imagePlan.getConfig(), pool);
+    }
+
+    private RectF[] fit(PageLayoutEngine.PageLayout[] layouts, int index, int width, int height, int orientation) {
+        long scaleStart = metrics.begin(PerformanceMetrics.Stage.SCALE);
+        if (ExifOrientation.isTransposed(orientation)) {
+            // La celda se ajusta a la imagen como se ve, con ancho y alto intercambiados
+            int swap = width;
+            width = height;
+            height = swap;
+        }
+        float[] rect = new float[4];
+        RectF[] destinations = new RectF[layouts.length];
+        for (int target = 0; target < layouts.length; target++) {
+            layouts[target].fit(index, width, height, rect);
+            destinations[target] = new RectF(rect[0], rect[1], rect[2], rect[3]);
+        }
+        metrics.end(PerformanceMetrics.Stage.SCALE, scaleStart);
+        return destinations;
+    }
+}
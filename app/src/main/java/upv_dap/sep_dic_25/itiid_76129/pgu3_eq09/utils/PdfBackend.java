@@ -0,0 +1,43 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.RectF;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Destino en el que {@link PDFGenerator} compone las páginas del documento.
+ * Sigue el mismo ciclo que {@link android.graphics.pdf.PdfDocument}: iniciar página, dibujar,
+ * terminar página y al final cerrar el documento con {@link #finish()}.
+ * La salida se entrega al crear el destino; cerrarlo no cierra esa salida.
+ * Los destinos que además pueden copiar JPEG sin decodificar implementan {@link JpegPassthroughBackend}.
+ */
+public interface PdfBackend extends Closeable {
+
+    /**
+     * Inicia una página nueva.
+     * @param width Ancho de la hoja en puntos PDF
+     * @param height Alto de la hoja en puntos PDF
+     * @param pixelsPerPoint Densidad de los rectángulos de destino que se recibirán, en píxeles por punto
+     * @throws IOException si falla la escritura
+     */
+    void startPage(int width, int height, float pixelsPerPoint) throws IOException;
+
+    /**
+     * Dibuja un bitmap en la orientación en que fue decodificado, enderezándolo con la misma
+     * transformación que lo coloca en la página.
+     * @param bitmap Bitmap en la orientación guardada en el archivo
+     * @param destination Rectángulo de la página donde se ve la imagen ya orientada
+     * @param orientation Orientación EXIF de la imagen
+     * @throws IOException si falla la escritura
+     */
+    void drawBitmap(Bitmap bitmap, RectF destination, int orientation) throws IOException;
+
+    void finishPage() throws IOException;
+
+    /**
+     * Termina el documento y vacía la salida.
+     * @throws IOException si falla la escritura
+     */
+    void finish() throws IOException;
+}
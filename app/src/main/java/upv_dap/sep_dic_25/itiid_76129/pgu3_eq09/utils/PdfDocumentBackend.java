@@ -0,0 +1,72 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.pdf.PdfDocument;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Destino basado en {@link PdfDocument}: cada imagen se rasteriza a través de un Canvas.
+ * PdfDocument conserva todas las páginas en memoria hasta {@link #finish()}; para documentos
+ * largos conviene {@link DirectPdfWriter}, que escribe cada página al terminarla.
+ */
+public class PdfDocumentBackend implements PdfBackend {
+
+    private final PdfDocument document = new PdfDocument();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    // Reutilizados en cada imagen orientada
+    private final Matrix matrix = new Matrix();
+    private final float[] matrixValues = new float[9];
+    private final OutputStream outputStream;
+    private PdfDocument.Page page;
+    private int pageCount;
+
+    /**
+     * @param outputStream Salida donde se escribe el documento al terminar
+     */
+    public PdfDocumentBackend(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    @Override
+    public void startPage(int width, int height, float pixelsPerPoint) {
+        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(width, height, ++pageCount).create();
+        page = document.startPage(pageInfo);
+        // El Canvas trabaja en puntos; los bitmaps conservan su resolución al dibujarse reducidos
+        page.getCanvas().scale(1f / pixelsPerPoint, 1f / pixelsPerPoint);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, RectF destination, int orientation) {
+        Canvas canvas = page.getCanvas();
+        if (orientation == ExifOrientation.NORMAL) {
+            canvas.drawBitmap(bitmap, null, destination, paint);
+            return;
+        }
+        ExifOrientation.setCanvasMatrix(matrix, orientation, 0, 0, bitmap.getWidth(), bitmap.getHeight(),
+            destination, matrixValues);
+        // Con la matriz como argumento no se aplica la densidad que el decodificador dejó en el bitmap
+        canvas.drawBitmap(bitmap, matrix, paint);
+    }
+
+    @Override
+    public void finishPage() {
+        document.finishPage(page);
+        page = null;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        document.writeTo(outputStream);
+        outputStream.flush();
+    }
+
+    @Override
+    public void close() {
+        document.close();
+    }
+}
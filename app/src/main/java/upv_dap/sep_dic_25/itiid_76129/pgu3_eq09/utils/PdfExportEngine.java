@@ -0,0 +1,193 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.R;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageSize;
+
+/**
+ * Motor de exportación que ejecuta {@link PDFGenerator} en un hilo de fondo.
+ * Entrega progreso y resultado en el hilo principal mediante {@link Callback}.
+ */
+public class PdfExportEngine {
+
+    private static final String TAG = "PdfExportEngine";
+
+    private final Context context;
+    private final ExportOptions options = new ExportOptions();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "pdf-export");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean released;
+    private volatile PerformanceMetrics lastMetrics;
+
+    /**
+     * Receptor de eventos de una exportación. Todos los métodos se invocan en el hilo principal.
+     */
+    public interface Callback {
+        void onProgress(int pageNumber, int totalPages);
+
+        /**
+         * @param outputs Documentos publicados, en el orden de los tamaños
+         * @param report Imágenes exportadas con menor calidad u omitidas; vacío si no hubo pérdidas
+         */
+        void onSuccess(List<ExportOutput> outputs, QualityReport report);
+
+        /**
+         * @param message Mensaje para el usuario, tomado de los recursos de texto
+         */
+        void onError(String message);
+
+        void onCancelled();
+    }
+
+    /**
+     * Manejador de una exportación en curso que permite cancelarla de forma cooperativa.
+     */
+    public static class Job {
+        private final CancellationSignal cancellationSignal = new CancellationSignal();
+        private final PerformanceMetrics metrics = new PerformanceMetrics();
+        private final QualityReport report = new QualityReport();
+        private volatile boolean finished;
+
+        /**
+         * Solicita la cancelación; el generador la atiende entre páginas e imágenes.
+         */
+        public void cancel() {
+            cancellationSignal.cancel();
+        }
+
+        public boolean isCancelled() {
+            return cancellationSignal.isCanceled();
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * @return Métricas de esta exportación; se pueden consultar mientras avanza
+         */
+        public PerformanceMetrics getMetrics() {
+            return metrics;
+        }
+    }
+
+    /**
+     * Constructor del motor de exportación
+     * @param context Contexto usado para acceder al ContentResolver
+     */
+    public PdfExportEngine(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Opciones aplicadas a las exportaciones siguientes (hilos, presupuesto de memoria y destino).
+     * @return Opciones modificables del motor
+     */
+    public ExportOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return Métricas de la última exportación terminada, o null si aún no hay ninguna
+     */
+    public PerformanceMetrics getLastMetrics() {
+        return lastMetrics;
+    }
+
+    /**
+     * Encola la exportación de las páginas indicadas, con un documento por tamaño de página.
+     * Las páginas se copian para que la interfaz pueda seguir editándolas durante la exportación;
+     * las restauradas que aún no se leen se copian sin leer el disco y se cargan en el hilo de exportación.
+     * @param pages Páginas a exportar
+     * @param pageSizes Tamaños de página objetivo; las imágenes se decodifican una sola vez para todos
+     * @param profile Perfil de calidad de esta exportación
+     * @param callback Receptor de progreso y resultado
+     * @return Manejador de la exportación
+     */
+    public Job export(List<ImagePage> pages, Collection<PageSize> pageSizes, ExportProfile profile,
+                      Callback callback) {
+        List<ImagePage> snapshot = new ArrayList<>(pages.size());
+        for (ImagePage page : pages) {
+            snapshot.add(page.copy());
+        }
+
+        // Sin repetidos y en un orden estable
+        List<PageSize> sizes = new ArrayList<>(pageSizes.isEmpty()
+            ? EnumSet.noneOf(PageSize.class) : EnumSet.copyOf(pageSizes));
+        ExportOptions jobOptions = new ExportOptions(options);
+        jobOptions.setProfile(profile);
+
+        Job job = new Job();
+        executor.execute(() -> run(job, snapshot, sizes, jobOptions, callback));
+        return job;
+    }
+
+    /**
+     * Cancela el trabajo pendiente y libera el hilo de exportación.
+     * Después de invocarlo ya no se entregan eventos a los callbacks.
+     */
+    public void shutdown() {
+        released = true;
+        executor.shutdownNow();
+    }
+
+    private void run(Job job, List<ImagePage> pages, List<PageSize> pageSizes, ExportOptions options,
+                     Callback callback) {
+        try {
+            // Los espacios de las páginas restauradas se leen aquí y no en el hilo principal
+            for (ImagePage page : pages) {
+                page.getItems();
+            }
+            List<ExportOutput> outputs = PDFGenerator.generatePDF(context, pages, pageSizes, options, job.metrics,
+                job.report, (pageNumber, totalPages) -> postProgress(job, callback, pageNumber, totalPages),
+                job.cancellationSignal);
+            finish(job, () -> callback.onSuccess(outputs, job.report));
+        } catch (OperationCanceledException e) {
+            Log.d(TAG, "Export cancelled");
+            finish(job, callback::onCancelled);
+        } catch (ExportValidationException e) {
+            Log.d(TAG, "Export rejected: " + e.getMessage());
+            String message = context.getString(e.getMessageRes());
+            finish(job, () -> callback.onError(message));
+        } catch (Exception e) {
+            // Los mensajes internos no se muestran al usuario
+            Log.e(TAG, "Failed to export PDF", e);
+            String message = context.getString(R.string.export_error_generic);
+            finish(job, () -> callback.onError(message));
+        }
+    }
+
+    private void postProgress(Job job, Callback callback, int pageNumber, int totalPages) {
+        mainHandler.post(() -> {
+            if (!released && !job.isCancelled()) {
+                callback.onProgress(pageNumber, totalPages);
+            }
+        });
+    }
+
+    private void finish(Job job, Runnable result) {
+        lastMetrics = job.metrics;
+        mainHandler.post(() -> {
+            job.finished = true;
+            if (!released) {
+                result.run();
+            }
+        });
+    }
+}
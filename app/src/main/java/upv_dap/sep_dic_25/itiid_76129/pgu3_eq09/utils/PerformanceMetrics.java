@@ -0,0 +1,166 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.os.Trace;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Temporizadores y contadores de rendimiento que se pueden consultar mientras se actualizan.
+ * Cada etapa acumula su tiempo y número de ejecuciones, y además abre una sección de
+ * {@link Trace} con el mismo nombre para verla en Perfetto o systrace.
+ * Las etapas que corren en varios hilos a la vez suman el tiempo de todos ellos.
+ */
+public class PerformanceMetrics {
+
+    /**
+     * Etapas medidas con {@link #begin(Stage)} y {@link #end(Stage, long)}.
+     */
+    public enum Stage {
+        /** Lectura de encabezados y plan de memoria previo al dibujo */
+        PLAN("export:plan"),
+        /** Sondeo del encabezado y decodificación, incluido el submuestreo del decodificador */
+        DECODE("export:decode"),
+        /** Cálculo de la rejilla y del rectángulo de cada imagen dentro de su celda */
+        SCALE("export:scale"),
+        /** Dibujo o incrustación de cada imagen en el documento */
+        DRAW("export:draw"),
+        /** Cierre de páginas, tabla xref y sincronización del archivo */
+        WRITE("export:write"),
+        /** Enlace de una celda de la cuadrícula */
+        BIND("grid:bind");
+
+        private final String traceName;
+
+        Stage(String traceName) {
+            this.traceName = traceName;
+        }
+
+        public String getTraceName() {
+            return traceName;
+        }
+    }
+
+    /**
+     * Contadores acumulados con {@link #add(Counter, long)} o {@link #max(Counter, long)}.
+     */
+    public enum Counter {
+        BYTES_WRITTEN,
+        IMAGES,
+        JPEG_PASSTHROUGH,
+        CACHE_HITS,
+        CACHE_MISSES,
+        POOL_HITS,
+        POOL_MISSES,
+        PEAK_BITMAP_BYTES
+    }
+
+    private static final int STAGE_COUNT = Stage.values().length;
+
+    // Por etapa: [0, STAGE_COUNT) nanosegundos, [STAGE_COUNT, 2 * STAGE_COUNT) ejecuciones
+    private final AtomicLongArray stages = new AtomicLongArray(STAGE_COUNT * 2);
+    private final AtomicLongArray counters = new AtomicLongArray(Counter.values().length);
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos;
+
+    /**
+     * Inicia la medición de una etapa en el hilo actual.
+     * @param stage Etapa medida
+     * @return Marca de inicio que debe pasarse a {@link #end(Stage, long)} en el mismo hilo
+     */
+    public long begin(Stage stage) {
+        Trace.beginSection(stage.traceName);
+        return System.nanoTime();
+    }
+
+    /**
+     * Termina la medición iniciada con {@link #begin(Stage)}.
+     * @param stage Etapa medida
+     * @param startNanos Marca devuelta por {@link #begin(Stage)}
+     */
+    public void end(Stage stage, long startNanos) {
+        stages.addAndGet(stage.ordinal(), System.nanoTime() - startNanos);
+        stages.incrementAndGet(STAGE_COUNT + stage.ordinal());
+        Trace.endSection();
+    }
+
+    public void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    /**
+     * Conserva el mayor valor observado del contador.
+     */
+    public void max(Counter counter, long value) {
+        int index = counter.ordinal();
+        long current;
+        while ((current = counters.get(index)) < value && !counters.compareAndSet(index, current, value)) {
+            // Otro hilo lo cambió; se vuelve a comparar
+        }
+    }
+
+    /**
+     * Marca el final de la medición para fijar el tiempo total.
+     */
+    public void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    public double getMillis(Stage stage) {
+        return stages.get(stage.ordinal()) / 1_000_000.0;
+    }
+
+    public long getCount(Stage stage) {
+        return stages.get(STAGE_COUNT + stage.ordinal());
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    /**
+     * @return Tiempo desde la creación hasta {@link #finish()}, o hasta ahora si no ha terminado
+     */
+    public double getElapsedMillis() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000.0;
+    }
+
+    /**
+     * @return Proporción de bitmaps tomados de {@link BitmapCache} en la exportación, o de miniaturas en
+     *         memoria o en {@link ThumbnailDiskCache} en la cuadrícula (0 a 1); 0 si no hubo consultas
+     */
+    public double getCacheHitRate() {
+        return rate(get(Counter.CACHE_HITS), get(Counter.CACHE_MISSES));
+    }
+
+    /**
+     * @return Proporción de decodificaciones que reutilizaron un bitmap de {@link BitmapPool}
+     */
+    public double getPoolHitRate() {
+        return rate(get(Counter.POOL_HITS), get(Counter.POOL_MISSES));
+    }
+
+    /**
+     * @return Resumen de una línea con todas las etapas y contadores
+     */
+    @Override
+    public String toString() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.US, "total=%.1fms", getElapsedMillis()));
+        for (Stage stage : Stage.values()) {
+            if (getCount(stage) > 0) {
+                summary.append(String.format(Locale.US, " %s=%.1fms/%d", stage.name().toLowerCase(Locale.US),
+                    getMillis(stage), getCount(stage)));
+            }
+        }
+        summary.append(String.format(Locale.US,
+            " images=%d passthrough=%d bytes=%d cacheHit=%.0f%% poolHit=%.0f%% peakBitmapBytes=%d",
+            get(Counter.IMAGES), get(Counter.JPEG_PASSTHROUGH), get(Counter.BYTES_WRITTEN),
+            getCacheHitRate() * 100, getPoolHitRate() * 100, get(Counter.PEAK_BITMAP_BYTES)));
+        return summary.toString();
+    }
+
+    private static double rate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+}
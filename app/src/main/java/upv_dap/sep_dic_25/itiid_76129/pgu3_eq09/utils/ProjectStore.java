@@ -0,0 +1,366 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.PageItem;
+
+/**
+ * Guarda el proyecto (páginas, diseños y marcadores) en el almacenamiento interno de la app.
+ * El índice contiene el orden, el diseño y los contadores de cada página; los espacios de cada
+ * página van en un archivo propio que solo se reescribe cuando la página cambió.
+ * Al restaurar únicamente se lee el índice y cada página carga sus espacios al usarse por primera vez.
+ */
+public class ProjectStore {
+
+    private static final String TAG = "ProjectStore";
+    private static final String DIRECTORY = "project";
+    private static final String INDEX_FILE = "index.bin";
+    private static final String PAGE_PREFIX = "page_";
+    private static final String PAGE_EXTENSION = ".bin";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int INDEX_MAGIC = 0x48494458; // "HIDX"
+    private static final int PAGE_MAGIC = 0x48504147; // "HPAG"
+    private static final int FORMAT_VERSION = 1;
+    private static final int SLOT_PLACEHOLDER = 0;
+    private static final int SLOT_IMAGE = 1;
+    private static final long AUTOSAVE_DELAY_MS = 1000;
+
+    private static ProjectStore instance;
+
+    private final File directory;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "project-writer");
+        thread.setPriority(Thread.NORM_PRIORITY - 1);
+        return thread;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Estado del hilo principal: identificador de archivo y revisión guardada de cada página
+    private final Map<ImagePage, Long> pageIds = new IdentityHashMap<>();
+    private final Map<ImagePage, Long> savedRevisions = new IdentityHashMap<>();
+    private long nextPageId = 1;
+    private List<ImagePage> pendingPages;
+    private int pendingPageIndex;
+    private final Runnable autosave = this::saveNow;
+
+    /**
+     * Proyecto leído del disco.
+     */
+    public static class Project {
+        private final List<ImagePage> pages;
+        private final int currentPageIndex;
+        // Identificador de archivo de cada página, en el mismo orden
+        private final long[] pageIds;
+        private final long nextPageId;
+
+        Project(List<ImagePage> pages, int currentPageIndex, long[] pageIds, long nextPageId) {
+            this.pages = pages;
+            this.currentPageIndex = currentPageIndex;
+            this.pageIds = pageIds;
+            this.nextPageId = nextPageId;
+        }
+
+        public List<ImagePage> getPages() {
+            return pages;
+        }
+
+        public int getCurrentPageIndex() {
+            return currentPageIndex;
+        }
+    }
+
+    /**
+     * Receptor del proyecto restaurado; se invoca en el hilo principal.
+     */
+    public interface RestoreCallback {
+        /**
+         * @param project Proyecto guardado o null si no hay uno legible
+         */
+        void onRestored(@Nullable Project project);
+    }
+
+    /**
+     * Datos de una página tomados en el hilo principal para escribirse en segundo plano.
+     */
+    private static class PageRecord {
+        final long id;
+        final int rows;
+        final int columns;
+        final boolean layoutCustomized;
+        final int slotCount;
+        final int imageCount;
+        // null cuando la página no cambió y su archivo sigue vigente
+        final List<PageItem> slots;
+
+        PageRecord(long id, ImagePage page, @Nullable List<PageItem> slots) {
+            this.id = id;
+            this.rows = page.getRows();
+            this.columns = page.getColumns();
+            this.layoutCustomized = page.isLayoutCustomized();
+            this.slotCount = page.getTotalSlots();
+            this.imageCount = page.getImageCount();
+            this.slots = slots;
+        }
+    }
+
+    private ProjectStore(Context context) {
+        this.directory = new File(context.getApplicationContext().getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * Obtiene la instancia única del almacén
+     * @param context Contexto de la aplicación
+     * @return Almacén compartido
+     */
+    public static synchronized ProjectStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ProjectStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Lee el índice del proyecto guardado en el hilo de escritura, después de las escrituras pendientes,
+     * y entrega el resultado en el hilo principal. Los espacios de cada página se leen hasta que
+     * la página se usa. Debe invocarse desde el hilo principal.
+     * @param callback Receptor del proyecto
+     */
+    public void restore(RestoreCallback callback) {
+        cancelAutosave();
+        // El ejecutor es de un solo hilo, así que la lectura espera a las escrituras sin bloquear la interfaz
+        writer.execute(() -> {
+            Project project = readIndex();
+            mainHandler.post(() -> {
+                pageIds.clear();
+                savedRevisions.clear();
+                if (project != null) {
+                    nextPageId = project.nextPageId;
+                    for (int i = 0; i < project.pages.size(); i++) {
+                        ImagePage page = project.pages.get(i);
+                        pageIds.put(page, project.pageIds[i]);
+                        savedRevisions.put(page, page.getRevision());
+                    }
+                }
+                callback.onRestored(project);
+            });
+        });
+    }
+
+    @Nullable
+    private Project readIndex() {
+        File indexFile = new File(directory, INDEX_FILE);
+        if (!indexFile.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (input.readInt() != INDEX_MAGIC || input.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, "Unsupported project index, starting a new project");
+                return null;
+            }
+            long nextId = input.readLong();
+            int currentPageIndex = input.readInt();
+            int pageCount = input.readInt();
+            List<ImagePage> pages = new ArrayList<>(pageCount);
+            long[] ids = new long[pageCount];
+            for (int i = 0; i < pageCount; i++) {
+                long id = input.readLong();
+                int rows = input.readInt();
+                int columns = input.readInt();
+                boolean layoutCustomized = input.readBoolean();
+                int slotCount = input.readInt();
+                int imageCount = input.readInt();
+                File pageFile = pageFile(id);
+                ids[i] = id;
+                pages.add(ImagePage.restored(rows, columns, layoutCustomized, slotCount, imageCount,
+                    () -> readSlots(pageFile)));
+            }
+            Log.d(TAG, "Project index restored: " + pageCount + " pages");
+            return new Project(pages, Math.max(0, Math.min(currentPageIndex, pageCount - 1)), ids, nextId);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read project index", e);
+            return null;
+        }
+    }
+
+    /**
+     * Programa un guardado; los cambios seguidos se agrupan en una sola escritura.
+     * Debe invocarse desde el hilo principal.
+     * @param pages Páginas actuales del proyecto
+     * @param currentPageIndex Página mostrada
+     */
+    public void scheduleSave(List<ImagePage> pages, int currentPageIndex) {
+        pendingPages = pages;
+        pendingPageIndex = currentPageIndex;
+        mainHandler.removeCallbacks(autosave);
+        mainHandler.postDelayed(autosave, AUTOSAVE_DELAY_MS);
+    }
+
+    /**
+     * Escribe de inmediato el guardado pendiente, por ejemplo cuando la actividad pasa a segundo plano.
+     * Solo se copian en el hilo principal las páginas que cambiaron; la escritura ocurre en segundo plano.
+     */
+    public void saveNow() {
+        mainHandler.removeCallbacks(autosave);
+        if (pendingPages == null) {
+            return;
+        }
+        List<PageRecord> records = new ArrayList<>(pendingPages.size());
+        for (ImagePage page : pendingPages) {
+            Long id = pageIds.get(page);
+            if (id == null) {
+                id = nextPageId++;
+                pageIds.put(page, id);
+            }
+            Long savedRevision = savedRevisions.get(page);
+            boolean dirty = savedRevision == null || savedRevision != page.getRevision();
+            records.add(new PageRecord(id, page, dirty ? new ArrayList<>(page.getItems()) : null));
+            savedRevisions.put(page, page.getRevision());
+        }
+        // Las páginas eliminadas del proyecto ya no necesitan seguimiento
+        Set<ImagePage> current = Collections.newSetFromMap(new IdentityHashMap<>());
+        current.addAll(pendingPages);
+        pageIds.keySet().retainAll(current);
+        savedRevisions.keySet().retainAll(current);
+
+        int currentPageIndex = pendingPageIndex;
+        long nextId = nextPageId;
+        pendingPages = null;
+        writer.execute(() -> {
+            try {
+                write(records, currentPageIndex, nextId);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not save project", e);
+                // Se olvidan las revisiones para reescribir todas las páginas en el siguiente intento
+                mainHandler.post(savedRevisions::clear);
+            }
+        });
+    }
+
+    private void cancelAutosave() {
+        mainHandler.removeCallbacks(autosave);
+        pendingPages = null;
+    }
+
+    private void write(List<PageRecord> records, int currentPageIndex, long nextId) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("No fue posible crear " + directory);
+        }
+        int written = 0;
+        Set<String> liveFiles = new HashSet<>();
+        liveFiles.add(INDEX_FILE);
+        for (PageRecord record : records) {
+            File file = pageFile(record.id);
+            liveFiles.add(file.getName());
+            if (record.slots != null) {
+                writePage(file, record.slots);
+                written++;
+            }
+        }
+
+        File indexFile = new File(directory, INDEX_FILE);
+        File temp = new File(directory, INDEX_FILE + TEMP_EXTENSION);
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(INDEX_MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(nextId);
+            output.writeInt(currentPageIndex);
+            output.writeInt(records.size());
+            for (PageRecord record : records) {
+                output.writeLong(record.id);
+                output.writeInt(record.rows);
+                output.writeInt(record.columns);
+                output.writeBoolean(record.layoutCustomized);
+                output.writeInt(record.slotCount);
+                output.writeInt(record.imageCount);
+            }
+        }
+        replace(temp, indexFile);
+
+        // Archivos de páginas eliminadas; se borran después de que el índice dejó de referirlas
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!liveFiles.contains(file.getName()) && !file.delete()) {
+                    Log.w(TAG, "Could not delete stale project file: " + file.getName());
+                }
+            }
+        }
+        Log.d(TAG, "Project saved: " + records.size() + " pages, " + written + " rewritten");
+    }
+
+    private static void writePage(File file, List<PageItem> slots) throws IOException {
+        File temp = new File(file.getPath() + TEMP_EXTENSION);
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(PAGE_MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(slots.size());
+            for (PageItem item : slots) {
+                if (item.isPlaceholder() || item.getUri() == null) {
+                    output.writeByte(SLOT_PLACEHOLDER);
+                } else {
+                    output.writeByte(SLOT_IMAGE);
+                    output.writeUTF(item.getUri().toString());
+                }
+            }
+        }
+        replace(temp, file);
+    }
+
+    private static List<PageItem> readSlots(File file) {
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != PAGE_MAGIC || input.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, "Unsupported page file: " + file.getName());
+                return Collections.emptyList();
+            }
+            int count = input.readInt();
+            List<PageItem> slots = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (input.readByte() == SLOT_IMAGE) {
+                    slots.add(PageItem.fromUri(Uri.parse(input.readUTF())));
+                } else {
+                    slots.add(PageItem.placeholder());
+                }
+            }
+            return slots;
+        } catch (IOException e) {
+            Log.e(TAG, "Could not read page file: " + file.getName(), e);
+            return Collections.emptyList();
+        }
+    }
+
+    private static void replace(File source, File target) throws IOException {
+        // rename() reemplaza el destino de forma atómica, así que un cierre inesperado nunca deja un archivo a medias
+        if (!source.renameTo(target)) {
+            throw new IOException("No fue posible reemplazar " + target.getName());
+        }
+    }
+
+    private File pageFile(long id) {
+        return new File(directory, PAGE_PREFIX + id + PAGE_EXTENSION);
+    }
+}
@@ -0,0 +1,126 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.net.Uri;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Registro de las imágenes que se exportaron con menos calidad de la pedida o que no se pudieron incluir.
+ * Lo llenan {@link DecodePlanner} y {@link PageRasterizer} desde varios hilos para que ninguna
+ * pérdida pase en silencio.
+ */
+public class QualityReport {
+
+    /**
+     * Motivo de cada entrada del reporte.
+     */
+    public enum Reason {
+        /** Se decodificó en RGB_565 para caber en el presupuesto de memoria */
+        REDUCED_COLOR,
+        /** Se decodificó a menor resolución para caber en el presupuesto de memoria */
+        REDUCED_RESOLUTION,
+        /** La decodificación se quedó sin memoria y se repitió a menor calidad */
+        OUT_OF_MEMORY,
+        /** La imagen no se pudo leer y no aparece en el documento */
+        OMITTED
+    }
+
+    /**
+     * Una imagen afectada.
+     */
+    public static class Entry {
+        private final int pageIndex;
+        private final int slotIndex;
+        private final Uri uri;
+        private final Reason reason;
+        private final String detail;
+
+        Entry(int pageIndex, int slotIndex, Uri uri, Reason reason, String detail) {
+            this.pageIndex = pageIndex;
+            this.slotIndex = slotIndex;
+            this.uri = uri;
+            this.reason = reason;
+            this.detail = detail;
+        }
+
+        public int getPageIndex() {
+            return pageIndex;
+        }
+
+        public int getSlotIndex() {
+            return slotIndex;
+        }
+
+        public Uri getUri() {
+            return uri;
+        }
+
+        public Reason getReason() {
+            return reason;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        @Override
+        public String toString() {
+            return "page " + (pageIndex + 1) + " slot " + (slotIndex + 1) + " " + reason + ": " + detail;
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    /**
+     * Agrega una entrada; se puede invocar desde cualquier hilo.
+     */
+    public synchronized void add(int pageIndex, int slotIndex, Uri uri, Reason reason, String detail) {
+        entries.add(new Entry(pageIndex, slotIndex, uri, reason, detail));
+    }
+
+    /**
+     * @return Copia de las entradas en el orden en que se registraron
+     */
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    public synchronized boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Resume el reporte para mostrarlo al usuario; cada imagen se cuenta una sola vez.
+     * @return Mensaje en español, o una cadena vacía si no hubo pérdidas
+     */
+    public synchronized String summarize() {
+        Set<String> reduced = new HashSet<>();
+        Set<String> omitted = new HashSet<>();
+        for (Entry entry : entries) {
+            String key = entry.pageIndex + ":" + entry.slotIndex;
+            if (entry.reason == Reason.OMITTED) {
+                omitted.add(key);
+            } else {
+                reduced.add(key);
+            }
+        }
+        reduced.removeAll(omitted);
+
+        StringBuilder summary = new StringBuilder();
+        if (!reduced.isEmpty()) {
+            summary.append(String.format(Locale.getDefault(),
+                "%d imágenes con calidad reducida por memoria", reduced.size()));
+        }
+        if (!omitted.isEmpty()) {
+            if (summary.length() > 0) {
+                summary.append('\n');
+            }
+            summary.append(String.format(Locale.getDefault(),
+                "%d imágenes no se pudieron leer", omitted.size()));
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,385 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+
+/**
+ * Caché en disco de las miniaturas cuadradas que muestra la cuadrícula.
+ * Cada miniatura se identifica por la URI, la fecha de modificación de la imagen y el lado de la celda,
+ * así que editar la imagen o cambiar de columnas genera una entrada nueva en vez de una miniatura vieja.
+ * El tamaño total está limitado y se descartan primero las miniaturas usadas hace más tiempo.
+ * Picasso la consulta mediante {@link #asRequestHandler()} con las URIs de {@link #thumbnailUri(Uri, int)}.
+ */
+public class ThumbnailDiskCache {
+
+    private static final String TAG = "ThumbnailDiskCache";
+    private static final String DIRECTORY = "thumbnails";
+    private static final String SCHEME = "thumbnail";
+    private static final String PARAM_SOURCE = "src";
+    private static final String PARAM_SIZE = "size";
+    private static final String EXTENSION = ".jpg";
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 85;
+    private static final int THREAD_COUNT = 2;
+    // Forma parte de la llave; se incrementa cuando cambia el dibujo para descartar miniaturas viejas
+    private static final int RENDER_VERSION = 2;
+
+    private static ThumbnailDiskCache instance;
+
+    private final ContentResolver resolver;
+    private final File directory;
+    // Nombre de archivo -> bytes, en orden de uso; el primero es el menos usado
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    private boolean indexed;
+    // Miniaturas en generación por nombre de archivo, para no decodificar la misma original dos veces
+    private final ConcurrentHashMap<String, CompletableFuture<File>> rendering = new ConcurrentHashMap<>();
+    // Receptor de aciertos y fallos de las cargas pedidas por Picasso; la precarga no se cuenta
+    private volatile PerformanceMetrics loadMetrics;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "thumbnail-writer");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private ThumbnailDiskCache(Context context) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.directory = new File(context.getApplicationContext().getCacheDir(), DIRECTORY);
+    }
+
+    /**
+     * Obtiene la instancia única de la caché
+     * @param context Contexto de la aplicación
+     * @return Caché compartida
+     */
+    public static synchronized ThumbnailDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailDiskCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Construye la URI que Picasso resuelve con esta caché.
+     * @param source URI de la imagen original
+     * @param size Lado de la miniatura en píxeles
+     * @return URI de la miniatura
+     */
+    public static Uri thumbnailUri(Uri source, int size) {
+        return new Uri.Builder()
+            .scheme(SCHEME)
+            .appendQueryParameter(PARAM_SOURCE, source.toString())
+            .appendQueryParameter(PARAM_SIZE, String.valueOf(size))
+            .build();
+    }
+
+    /**
+     * Genera en segundo plano las miniaturas que aún no existen, por ejemplo al importar imágenes.
+     * @param uris Imágenes a preparar
+     * @param size Lado de la miniatura en píxeles
+     */
+    public void prefetch(Collection<Uri> uris, int size) {
+        for (Uri uri : uris) {
+            executor.execute(() -> {
+                try {
+                    getOrCreate(uri, size);
+                } catch (IOException e) {
+                    Log.w(TAG, "Could not prepare thumbnail for " + uri, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Devuelve el archivo de la miniatura, generándolo si no existe. No debe invocarse en el hilo principal.
+     * @param source URI de la imagen original
+     * @param size Lado de la miniatura en píxeles
+     * @return Archivo JPEG de size x size
+     * @throws IOException si no se pudo leer la imagen o escribir la miniatura
+     */
+    public File getOrCreate(Uri source, int size) throws IOException {
+        return getOrCreate(source, size, null);
+    }
+
+    /**
+     * Registra dónde se cuentan las cargas de Picasso: un acierto si la miniatura ya estaba en disco y
+     * un fallo si hubo que decodificar la original.
+     * @param metrics Métricas de la cuadrícula, o null para dejar de contar
+     */
+    public void setLoadMetrics(@Nullable PerformanceMetrics metrics) {
+        this.loadMetrics = metrics;
+    }
+
+    private File getOrCreate(Uri source, int size, @Nullable PerformanceMetrics metrics) throws IOException {
+        String name = keyFor(source, size) + EXTENSION;
+        File file = new File(directory, name);
+        if (findCached(name, file)) {
+            if (metrics != null) {
+                metrics.add(PerformanceMetrics.Counter.CACHE_HITS, 1);
+            }
+            return file;
+        }
+
+        if (metrics != null) {
+            metrics.add(PerformanceMetrics.Counter.CACHE_MISSES, 1);
+        }
+        CompletableFuture<File> created = new CompletableFuture<>();
+        CompletableFuture<File> existing = rendering.putIfAbsent(name, created);
+        if (existing != null) {
+            // La precarga y Picasso pueden pedir la misma miniatura a la vez; se espera a quien ya la genera
+            return await(existing);
+        }
+        try {
+            // Pudo terminar otra generación entre la consulta y la reserva
+            if (!findCached(name, file)) {
+                store(render(source, size), name, file);
+            }
+            created.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            rendering.remove(name, created);
+        }
+    }
+
+    private synchronized boolean findCached(String name, File file) {
+        ensureIndexed();
+        if (entries.get(name) != null && file.exists()) {
+            // La fecha del archivo conserva el orden de uso entre reinicios
+            file.setLastModified(System.currentTimeMillis());
+            return true;
+        }
+        return false;
+    }
+
+    private void store(Bitmap thumbnail, String name, File file) throws IOException {
+        File temp = File.createTempFile(name, ".tmp", directory);
+        try {
+            boolean encoded;
+            try (OutputStream outputStream = new FileOutputStream(temp)) {
+                encoded = thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+            }
+            // Un archivo vacío o truncado se leería después como acierto
+            if (!encoded) {
+                throw new IOException("No fue posible codificar la miniatura " + name);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("No fue posible guardar la miniatura " + name);
+            }
+        } catch (IOException | RuntimeException e) {
+            if (temp.exists() && !temp.delete()) {
+                Log.w(TAG, "Could not delete temporary thumbnail: " + temp.getName());
+            }
+            throw e;
+        } finally {
+            thumbnail.recycle();
+        }
+        synchronized (this) {
+            Long previous = entries.put(name, file.length());
+            totalBytes += file.length() - (previous != null ? previous : 0);
+            trimToSize();
+        }
+    }
+
+    private static File await(CompletableFuture<File> pending) throws IOException {
+        try {
+            return pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido mientras se esperaba la miniatura");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("No fue posible generar la miniatura", cause);
+        }
+    }
+
+    /**
+     * Adaptador para que Picasso cargue las URIs de {@link #thumbnailUri(Uri, int)}.
+     * Picasso ya ejecuta la carga en sus hilos y guarda el resultado en su caché en memoria.
+     * @return Manejador para {@link Picasso.Builder#addRequestHandler(RequestHandler)}
+     */
+    public RequestHandler asRequestHandler() {
+        return new RequestHandler() {
+            @Override
+            public boolean canHandleRequest(Request data) {
+                return SCHEME.equals(data.uri.getScheme());
+            }
+
+            @Override
+            public Result load(@NonNull Request request, int networkPolicy) throws IOException {
+                String source = request.uri.getQueryParameter(PARAM_SOURCE);
+                String size = request.uri.getQueryParameter(PARAM_SIZE);
+                if (source == null || size == null) {
+                    throw new IOException("URI de miniatura inválida: " + request.uri);
+                }
+                File file = getOrCreate(Uri.parse(source), Integer.parseInt(size), loadMetrics);
+                Bitmap bitmap = BitmapFactory.decodeFile(file.getPath());
+                if (bitmap == null) {
+                    throw new IOException("Miniatura dañada: " + file.getName());
+                }
+                return new Result(bitmap, Picasso.LoadedFrom.DISK);
+            }
+        };
+    }
+
+    /**
+     * Decodifica la imagen con submuestreo y la recorta al centro en un cuadrado de size x size.
+     */
+    private Bitmap render(Uri source, int size) throws IOException {
+        ImageMetadata header = ImageProbe.probe(resolver, source);
+        if (header == null) {
+            throw new IOException("Formato no soportado: " + source);
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = BitmapDecoder.calculateInSampleSize(header.getWidth(), header.getHeight(), size, size);
+        Bitmap decoded;
+        try (InputStream inputStream = resolver.openInputStream(source)) {
+            if (inputStream == null) {
+                throw new IOException("No fue posible abrir " + source);
+            }
+            decoded = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("No fue posible decodificar " + source);
+        }
+
+        int side = Math.min(decoded.getWidth(), decoded.getHeight());
+        int left = (decoded.getWidth() - side) / 2;
+        int top = (decoded.getHeight() - side) / 2;
+        Bitmap thumbnail = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(thumbnail);
+        // JPEG no guarda transparencia; se usa el mismo fondo blanco que la página
+        canvas.drawColor(Color.WHITE);
+        // El recorte y la orientación EXIF se aplican en una sola matriz, sin un bitmap rotado intermedio
+        Matrix matrix = new Matrix();
+        ExifOrientation.setCanvasMatrix(matrix, header.getOrientation(), left, top, side, side,
+            new RectF(0, 0, size, size), new float[9]);
+        canvas.drawBitmap(decoded, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+        decoded.recycle();
+        return thumbnail;
+    }
+
+    private String keyFor(Uri source, int size) {
+        String key = source + "|" + lastModified(source) + "|" + size + "|" + RENDER_VERSION;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte value : digest) {
+                hex.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 no disponible", e);
+        }
+    }
+
+    /**
+     * Fecha de modificación informada por el proveedor; 0 si no la expone.
+     */
+    private long lastModified(Uri source) {
+        if (ContentResolver.SCHEME_FILE.equals(source.getScheme()) && source.getPath() != null) {
+            return new File(source.getPath()).lastModified();
+        }
+        try (Cursor cursor = resolver.query(source, null, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return 0;
+            }
+            int column = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+            if (column >= 0 && !cursor.isNull(column)) {
+                return cursor.getLong(column);
+            }
+            column = cursor.getColumnIndex(MediaStore.MediaColumns.DATE_MODIFIED);
+            if (column >= 0 && !cursor.isNull(column)) {
+                // MediaStore la guarda en segundos
+                return cursor.getLong(column) * 1000;
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not query modification time for " + source, e);
+        }
+        return 0;
+    }
+
+    /**
+     * Carga el índice desde el directorio la primera vez, ordenado por fecha de último uso.
+     */
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        indexed = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create thumbnail directory");
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (!file.getName().endsWith(EXTENSION)) {
+                // Temporales de una escritura interrumpida
+                file.delete();
+                continue;
+            }
+            entries.put(file.getName(), file.length());
+            totalBytes += file.length();
+        }
+        trimToSize();
+        Log.d(TAG, "Thumbnail cache indexed: " + entries.size() + " files, " + totalBytes + " bytes");
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > MAX_BYTES && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            totalBytes -= eldest.getValue();
+            if (!new File(directory, eldest.getKey()).delete()) {
+                Log.w(TAG, "Could not delete thumbnail: " + eldest.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImageMetadata;
+
+/**
+ * Valida en paralelo las imágenes recién importadas leyendo su encabezado con {@link ImageProbe}.
+ * Cada URI tiene un tiempo límite propio y su resultado se entrega en el hilo principal en cuanto
+ * termina, sin esperar al resto del lote. Los metadatos leídos se entregan a {@link ImageMetadataService}
+ * para no volver a abrir el archivo, y las URIs ilegibles quedan registradas para que la exportación
+ * las omita sin intentar abrirlas. Las que exceden el tiempo límite no se registran: la exportación
+ * las intenta una vez más.
+ */
+public class UriValidator {
+
+    private static final String TAG = "UriValidator";
+    private static final int THREAD_COUNT = 4;
+    private static final long TIMEOUT_MS = 5000;
+    private static final long IDLE_THREAD_MS = 1000;
+
+    private static UriValidator instance;
+
+    private final Context context;
+    private final Map<Uri, Status> results = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor timeoutExecutor = new ScheduledThreadPoolExecutor(1,
+        runnable -> new Thread(runnable, "uri-validator-timeout"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger threadIndex = new AtomicInteger();
+
+    /**
+     * Resultado de la validación de una URI.
+     */
+    public enum Status {
+        READABLE,
+        UNREADABLE,
+        /** La lectura no terminó a tiempo; no se registra para que la URI se pueda volver a validar */
+        TIMED_OUT
+    }
+
+    /**
+     * Receptor de los resultados; todos los métodos se invocan en el hilo principal.
+     */
+    public interface Callback {
+        /**
+         * Se invoca una vez por URI, en el orden en que terminan.
+         */
+        void onUriValidated(Uri uri, Status status);
+
+        /**
+         * Se invoca después del último resultado del lote.
+         * @param unreadableCount URIs ilegibles; las que excedieron el tiempo límite no se cuentan
+         */
+        void onValidationFinished(int unreadableCount);
+    }
+
+    private UriValidator(Context context) {
+        this.context = context.getApplicationContext();
+        // Los tiempos límite de las lecturas que sí terminaron no se quedan en la cola
+        timeoutExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Obtiene la instancia única del validador
+     * @param context Contexto de la aplicación
+     * @return Validador compartido
+     */
+    public static synchronized UriValidator getInstance(Context context) {
+        if (instance == null) {
+            instance = new UriValidator(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Valida un lote de URIs en paralelo. Cada lote tiene sus propios hilos, así que un proveedor
+     * bloqueado no detiene validaciones posteriores; dentro del lote, cada lectura que excede el
+     * tiempo límite agrega un hilo para que las URIs en cola no esperen al hilo atascado.
+     * @param uris URIs a validar; las repetidas se validan una vez
+     * @param callback Receptor de los resultados
+     */
+    public void validate(Collection<Uri> uris, Callback callback) {
+        Set<Uri> batch = new LinkedHashSet<>(uris);
+        batch.remove(null);
+        if (batch.isEmpty()) {
+            mainHandler.post(() -> callback.onValidationFinished(0));
+            return;
+        }
+
+        ThreadPoolExecutor ioExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+            IDLE_THREAD_MS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "uri-validator-" + threadIndex.incrementAndGet());
+                thread.setPriority(Thread.NORM_PRIORITY - 1);
+                return thread;
+            });
+        ioExecutor.allowCoreThreadTimeOut(true);
+        AtomicInteger remaining = new AtomicInteger(batch.size());
+        AtomicInteger unreadable = new AtomicInteger();
+        for (Uri uri : batch) {
+            AtomicBoolean delivered = new AtomicBoolean();
+            AtomicReference<FutureTask<Void>> task = new AtomicReference<>();
+            task.set(new FutureTask<>(() -> {
+                // El plazo corre desde que empieza la lectura, no desde que la URI entra en la cola
+                ScheduledFuture<?> timeout = timeoutExecutor.schedule(() -> {
+                    if (complete(uri, Status.TIMED_OUT, delivered, remaining, unreadable, callback)) {
+                        // El proveedor no respondió; se interrumpe la lectura si aún puede hacerse
+                        task.get().cancel(true);
+                        Log.w(TAG, "Validation timed out for " + uri);
+                        replaceStuckWorker(ioExecutor);
+                    }
+                }, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                Status status = probe(uri);
+                if (complete(uri, status, delivered, remaining, unreadable, callback)) {
+                    timeout.cancel(false);
+                }
+            }, null));
+            ioExecutor.execute(task.get());
+        }
+        // Las URIs en cola se siguen validando; los hilos terminan al vaciarse la cola
+        ioExecutor.shutdown();
+    }
+
+    /**
+     * Una lectura de un proveedor bloqueado no responde a la interrupción; su hilo se da por perdido
+     * y se agrega otro para atender la cola del lote.
+     */
+    private static void replaceStuckWorker(ThreadPoolExecutor executor) {
+        synchronized (executor) {
+            if (executor.getQueue().isEmpty()) {
+                return;
+            }
+            int size = executor.getCorePoolSize() + 1;
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        }
+    }
+
+    /**
+     * @param uri URI a consultar
+     * @return true si la última validación de la URI falló
+     */
+    public boolean isUnreadable(Uri uri) {
+        return results.get(uri) == Status.UNREADABLE;
+    }
+
+    /**
+     * @return Copia de las URIs cuya última validación falló
+     */
+    public Set<Uri> getUnreadableUris() {
+        Set<Uri> unreadable = new HashSet<>();
+        for (Map.Entry<Uri, Status> entry : results.entrySet()) {
+            if (entry.getValue() == Status.UNREADABLE) {
+                unreadable.add(entry.getKey());
+            }
+        }
+        return unreadable;
+    }
+
+    private Status probe(Uri uri) {
+        ContentResolver resolver = context.getContentResolver();
+        try {
+            ImageMetadata metadata = ImageProbe.probe(resolver, uri);
+            if (metadata == null) {
+                return Status.UNREADABLE;
+            }
+            ImageMetadataService.getInstance(context).offer(uri, metadata);
+            return Status.READABLE;
+        } catch (IOException | RuntimeException e) {
+            // Incluye URIs obsoletas o proveedores que no admiten la operación, no solo permisos revocados
+            Log.w(TAG, "Unreadable image " + uri, e);
+            return Status.UNREADABLE;
+        }
+    }
+
+    /**
+     * Registra el primer resultado de una URI; el que llegue después (lectura o tiempo límite) se ignora.
+     * @return true si este resultado fue el entregado
+     */
+    private boolean complete(Uri uri, Status status, AtomicBoolean delivered, AtomicInteger remaining,
+                             AtomicInteger unreadable, Callback callback) {
+        if (!delivered.compareAndSet(false, true)) {
+            return false;
+        }
+        if (status == Status.TIMED_OUT) {
+            // Un proveedor lento no vuelve ilegible la imagen; la exportación la intentará abrir
+            results.remove(uri);
+        } else {
+            results.put(uri, status);
+        }
+        if (status == Status.UNREADABLE) {
+            unreadable.incrementAndGet();
+        }
+        boolean last = remaining.decrementAndGet() == 0;
+        mainHandler.post(() -> {
+            callback.onUriValidated(uri, status);
+            if (last) {
+                callback.onValidationFinished(unreadable.get());
+            }
+        });
+        return true;
+    }
+}
@@ -0,0 +1,145 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models;
+
+import android.net.Uri;
+import java.util.BitSet;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Índices de la lista de espacios de una página: conteo de imágenes, URIs repetidas y
+ * posiciones de los espacios en blanco después de cada edición.
+ */
+public class ImagePageTest {
+
+    private static Uri uri(int index) {
+        return Uri.parse("content://media/external/images/media/" + index);
+    }
+
+    private static BitSet positions(int... indexes) {
+        BitSet positions = new BitSet();
+        for (int index : indexes) {
+            positions.set(index);
+        }
+        return positions;
+    }
+
+    @Test
+    public void removePositions_mixedRemovalKeepsOrderAndIndexes() {
+        ImagePage page = new ImagePage();
+        List<PageItem> slots = page.getMutableItems();
+        PageItem first = PageItem.fromUri(uri(0));
+        PageItem blank1 = PageItem.placeholder();
+        PageItem second = PageItem.fromUri(uri(1));
+        PageItem blank2 = PageItem.placeholder();
+        PageItem third = PageItem.fromUri(uri(2));
+        PageItem fourth = PageItem.fromUri(uri(3));
+        PageItem last = PageItem.placeholder();
+        slots.add(first);
+        slots.add(blank1);
+        slots.add(second);
+        slots.add(blank2);
+        slots.add(third);
+        slots.add(fourth);
+        slots.add(last);
+
+        // Primer y último espacio, una imagen intermedia y un espacio en blanco intermedio
+        page.removePositions(positions(0, 2, 3, 6));
+
+        List<PageItem> items = page.getItems();
+        assertEquals(3, page.getTotalSlots());
+        assertEquals(2, page.getImageCount());
+        assertSame(blank1, items.get(0));
+        assertSame(third, items.get(1));
+        assertSame(fourth, items.get(2));
+
+        // Las URIs eliminadas se pueden volver a agregar; las que siguen en la página no
+        page.addImage(uri(2));
+        assertEquals(3, page.getTotalSlots());
+
+        // El único espacio en blanco que queda se movió a la posición 0
+        page.addImage(uri(0));
+        assertEquals(3, page.getTotalSlots());
+        assertEquals(3, page.getImageCount());
+        assertEquals(uri(0), page.getItems().get(0).getUri());
+        assertFalse(page.getItems().get(0).isPlaceholder());
+
+        // Sin espacios en blanco, la siguiente imagen va al final
+        page.addImage(uri(1));
+        assertEquals(4, page.getTotalSlots());
+        assertEquals(uri(1), page.getItems().get(3).getUri());
+    }
+
+    @Test
+    public void removePositions_emptyOrOutOfRangeIsNoOp() {
+        ImagePage page = new ImagePage();
+        page.addImage(uri(0));
+        page.addPlaceholder();
+        long revision = page.getRevision();
+
+        page.removePositions(new BitSet());
+        page.removePositions(positions(2, 10));
+
+        assertEquals(revision, page.getRevision());
+        assertEquals(2, page.getTotalSlots());
+        assertEquals(1, page.getImageCount());
+        assertTrue(page.getItems().get(1).isPlaceholder());
+    }
+
+    @Test
+    public void removePositions_everySlotEmptiesIndexes() {
+        ImagePage page = new ImagePage();
+        page.addImage(uri(0));
+        page.addPlaceholder();
+        page.addImage(uri(1));
+        page.addPlaceholder();
+
+        page.removePositions(positions(0, 1, 2, 3));
+
+        assertEquals(0, page.getTotalSlots());
+        assertEquals(0, page.getImageCount());
+        page.addImage(uri(0));
+        assertEquals(1, page.getTotalSlots());
+        assertFalse(page.getItems().get(0).isPlaceholder());
+    }
+
+    @Test
+    public void repeatedUri_staysIndexedUntilLastCopyIsRemoved() {
+        ImagePage page = new ImagePage();
+        List<PageItem> slots = page.getMutableItems();
+        slots.add(PageItem.fromUri(uri(0)));
+        slots.add(PageItem.fromUri(uri(1)));
+        slots.add(PageItem.fromUri(uri(0)));
+
+        page.removePositions(positions(0));
+        page.addImage(uri(0));
+        assertEquals(2, page.getTotalSlots());
+
+        page.removePositions(positions(1));
+        page.addImage(uri(0));
+        assertEquals(2, page.getTotalSlots());
+        assertEquals(uri(0), page.getItems().get(1).getUri());
+    }
+
+    @Test
+    public void insertAndRemove_shiftPlaceholderPositions() {
+        ImagePage page = new ImagePage();
+        page.addPlaceholder();
+        page.addPlaceholder();
+        List<PageItem> slots = page.getMutableItems();
+
+        // Insertar al inicio recorre los espacios en blanco a 1 y 2
+        slots.add(0, PageItem.fromUri(uri(0)));
+        page.addImage(uri(1));
+        assertEquals(uri(1), page.getItems().get(1).getUri());
+        assertTrue(page.getItems().get(2).isPlaceholder());
+
+        // Quitar el primero regresa el espacio en blanco restante a la posición 1
+        slots.remove(0);
+        page.addImage(uri(2));
+        assertEquals(2, page.getTotalSlots());
+        assertEquals(2, page.getImageCount());
+        assertEquals(uri(2), page.getItems().get(1).getUri());
+    }
+}
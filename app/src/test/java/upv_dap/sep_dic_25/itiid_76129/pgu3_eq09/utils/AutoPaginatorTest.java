@@ -0,0 +1,55 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Reparto automático de imágenes en páginas a partir de sus proporciones.
+ */
+public class AutoPaginatorTest {
+
+    private static final float LETTER_ASPECT = 612f / 792f;
+
+    @Test
+    public void paginate_coversEveryImageInOrder() {
+        float[] aspects = new float[23];
+        Arrays.fill(aspects, 1.5f);
+
+        List<AutoPaginator.PageGroup> groups = AutoPaginator.paginate(aspects, LETTER_ASPECT, 6);
+
+        int next = 0;
+        for (AutoPaginator.PageGroup group : groups) {
+            assertEquals(next, group.start);
+            assertTrue(group.rows * group.columns >= group.count);
+            assertTrue(group.rows * group.columns - group.count < group.columns);
+            next += group.count;
+        }
+        assertEquals(aspects.length, next);
+    }
+
+    @Test
+    public void paginate_prefersWideCellsForLandscapeImages() {
+        float[] aspects = new float[6];
+        Arrays.fill(aspects, 1.5f);
+
+        AutoPaginator.PageGroup group = AutoPaginator.paginate(aspects, LETTER_ASPECT, 6).get(0);
+
+        assertEquals(6, group.count);
+        assertEquals(3, group.rows);
+        assertEquals(2, group.columns);
+    }
+
+    @Test
+    public void paginate_emptyBatchHasNoPages() {
+        assertTrue(AutoPaginator.paginate(new float[0], LETTER_ASPECT, 6).isEmpty());
+    }
+
+    @Test
+    public void fill_unknownAspectIsNeutral() {
+        assertEquals(1f, AutoPaginator.fill(0f, 0.5f), 0.001f);
+        assertEquals(0.5f, AutoPaginator.fill(1f, 0.5f), 0.001f);
+    }
+}
@@ -0,0 +1,91 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import android.graphics.RectF;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Matriz con la que se dibujan los bitmaps girados: la imagen guardada debe ocupar
+ * exactamente el rectángulo de destino, sin importar el tamaño del bitmap.
+ */
+public class ExifOrientationTest {
+
+    private static final float DELTA = 0.001f;
+    private static final int BITMAP_WIDTH = 400;
+    private static final int BITMAP_HEIGHT = 300;
+
+    /**
+     * Aplica los valores de la matriz a un punto del bitmap.
+     * @return {x, y} en el Canvas
+     */
+    private static float[] map(float[] values, float x, float y) {
+        return new float[]{
+            values[0] * x + values[1] * y + values[2],
+            values[3] * x + values[4] * y + values[5]
+        };
+    }
+
+    private static RectF drawnBounds(int orientation, RectF destination) {
+        float[] values = new float[9];
+        ExifOrientation.canvasValues(orientation, 0, 0, BITMAP_WIDTH, BITMAP_HEIGHT, destination, values);
+        RectF bounds = null;
+        float[][] corners = {{0, 0}, {BITMAP_WIDTH, 0}, {0, BITMAP_HEIGHT}, {BITMAP_WIDTH, BITMAP_HEIGHT}};
+        for (float[] corner : corners) {
+            float[] point = map(values, corner[0], corner[1]);
+            if (bounds == null) {
+                bounds = new RectF(point[0], point[1], point[0], point[1]);
+            } else {
+                bounds.left = Math.min(bounds.left, point[0]);
+                bounds.top = Math.min(bounds.top, point[1]);
+                bounds.right = Math.max(bounds.right, point[0]);
+                bounds.bottom = Math.max(bounds.bottom, point[1]);
+            }
+        }
+        return bounds;
+    }
+
+    private static void assertBounds(RectF expected, RectF actual) {
+        assertEquals(expected.left, actual.left, DELTA);
+        assertEquals(expected.top, actual.top, DELTA);
+        assertEquals(expected.right, actual.right, DELTA);
+        assertEquals(expected.bottom, actual.bottom, DELTA);
+    }
+
+    @Test
+    public void canvasValues_rotate90FillsDestination() {
+        // La foto guardada en horizontal se ve en vertical: 300 x 400 ajustado a 150 x 200
+        RectF destination = new RectF(10, 20, 160, 220);
+
+        assertBounds(destination, drawnBounds(6, destination));
+
+        // La esquina superior izquierda guardada queda arriba a la derecha
+        float[] values = new float[9];
+        ExifOrientation.canvasValues(6, 0, 0, BITMAP_WIDTH, BITMAP_HEIGHT, destination, values);
+        float[] origin = map(values, 0, 0);
+        assertEquals(destination.right, origin[0], DELTA);
+        assertEquals(destination.top, origin[1], DELTA);
+    }
+
+    @Test
+    public void canvasValues_rotate270FillsDestination() {
+        RectF destination = new RectF(5, 0, 305, 400);
+
+        assertBounds(destination, drawnBounds(8, destination));
+
+        // La esquina superior izquierda guardada queda abajo a la izquierda
+        float[] values = new float[9];
+        ExifOrientation.canvasValues(8, 0, 0, BITMAP_WIDTH, BITMAP_HEIGHT, destination, values);
+        float[] origin = map(values, 0, 0);
+        assertEquals(destination.left, origin[0], DELTA);
+        assertEquals(destination.bottom, origin[1], DELTA);
+    }
+
+    @Test
+    public void isTransposed_onlyForQuarterTurns() {
+        assertFalse(ExifOrientation.isTransposed(ExifOrientation.NORMAL));
+        assertFalse(ExifOrientation.isTransposed(3));
+        assertTrue(ExifOrientation.isTransposed(6));
+        assertTrue(ExifOrientation.isTransposed(8));
+    }
+}
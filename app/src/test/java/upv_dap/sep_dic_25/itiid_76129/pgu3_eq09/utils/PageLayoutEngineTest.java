@@ -0,0 +1,53 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Geometría del motor de composición, la misma que usan la exportación y la vista previa.
+ */
+public class PageLayoutEngineTest {
+
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void effectiveRows_growsToFitAllSlots() {
+        assertEquals(1, PageLayoutEngine.effectiveRows(0, 1, 3));
+        assertEquals(2, PageLayoutEngine.effectiveRows(4, 1, 3));
+        assertEquals(4, PageLayoutEngine.effectiveRows(4, 4, 3));
+    }
+
+    @Test
+    public void layout_placesCellsInReadingOrder() {
+        PageLayoutEngine.PageLayout layout = PageLayoutEngine.getInstance().layout(5, 1, 2, 200, 300);
+
+        assertEquals(3, layout.getRows());
+        assertEquals(100f, layout.getCellWidth(), DELTA);
+        assertEquals(100f, layout.getCellHeight(), DELTA);
+        assertEquals(100f, layout.getCellLeft(3), DELTA);
+        assertEquals(100f, layout.getCellTop(3), DELTA);
+        assertEquals(0f, layout.getCellLeft(4), DELTA);
+        assertEquals(200f, layout.getCellTop(4), DELTA);
+    }
+
+    @Test
+    public void layout_isCachedPerShape() {
+        PageLayoutEngine engine = PageLayoutEngine.getInstance();
+        assertSame(engine.layout(6, 2, 3, 1224, 1584), engine.layout(6, 2, 3, 1224, 1584));
+        assertNotSame(engine.layout(6, 2, 3, 1224, 1584), engine.layout(6, 2, 3, 1224, 2016));
+    }
+
+    @Test
+    public void fit_centersContentKeepingAspectRatio() {
+        PageLayoutEngine.PageLayout layout = PageLayoutEngine.getInstance().layout(2, 1, 2, 200, 100);
+        float[] rect = new float[4];
+
+        layout.fit(1, 400, 200, rect);
+
+        assertEquals(100f, rect[0], DELTA);
+        assertEquals(25f, rect[1], DELTA);
+        assertEquals(200f, rect[2], DELTA);
+        assertEquals(75f, rect[3], DELTA);
+    }
+}
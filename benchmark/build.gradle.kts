@@ -0,0 +1,48 @@
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+// Microbenchmarks de las rutas críticas del modelo y la composición de páginas.
+// Se ejecutan en una JVM normal con: ./gradlew :benchmark:jmh
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+val appSources = "../app/src/main/java"
+val appPackage = "upv_dap/sep_dic_25/itiid_76129/pgu3_eq09"
+
+sourceSets {
+    main {
+        java {
+            // Solo las clases sin dependencias del framework de Android
+            srcDir(appSources)
+            include(
+                "$appPackage/models/ImagePage.java",
+                "$appPackage/models/PageItem.java",
+                "$appPackage/models/PageSize.java",
+                "$appPackage/utils/PageLayoutEngine.java",
+                "$appPackage/utils/GridOptionsBuilder.java"
+            )
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.annotation)
+    // Implementación real de android.net.Uri que funciona fuera de un dispositivo
+    implementation(libs.android.all)
+
+    jmh(libs.jmh.core)
+    jmhAnnotationProcessor(libs.jmh.generator.annprocess)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
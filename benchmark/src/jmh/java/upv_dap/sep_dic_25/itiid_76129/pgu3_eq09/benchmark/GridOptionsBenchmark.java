@@ -0,0 +1,29 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.GridOptionsBuilder;
+
+/**
+ * Mide el cálculo de rejillas que se ejecuta cada vez que se abre el diálogo de disposición.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GridOptionsBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Benchmark
+    public List<GridOptionsBuilder.GridOption> buildGridOptions() {
+        return GridOptionsBuilder.build(size);
+    }
+}
@@ -0,0 +1,87 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.benchmark;
+
+import android.net.Uri;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.models.ImagePage;
+
+/**
+ * Mide las operaciones de {@link ImagePage} que se ejecutan al importar, borrar y refrescar la cuadrícula.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImagePageBenchmark {
+
+    // Uno de cada PLACEHOLDER_EVERY espacios es un espacio en blanco
+    private static final int PLACEHOLDER_EVERY = 5;
+    // Se borra uno de cada REMOVE_EVERY espacios
+    private static final int REMOVE_EVERY = 3;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private Uri[] uris;
+    private ImagePage filledPage;
+    private ImagePage pageToTrim;
+    private BitSet positionsToRemove;
+
+    @Setup(Level.Trial)
+    public void createUris() {
+        uris = new Uri[size];
+        for (int i = 0; i < size; i++) {
+            uris[i] = Uri.parse("content://media/external/images/media/" + i);
+        }
+        filledPage = buildPage();
+    }
+
+    @Setup(Level.Invocation)
+    public void preparePageToTrim() {
+        pageToTrim = buildPage();
+        positionsToRemove = new BitSet(pageToTrim.getTotalSlots());
+        for (int i = 0; i < pageToTrim.getTotalSlots(); i += REMOVE_EVERY) {
+            positionsToRemove.set(i);
+        }
+    }
+
+    /**
+     * Importa todas las imágenes en una página vacía, intercalando espacios en blanco
+     * para que algunas reemplacen un espacio y otras se agreguen al final.
+     */
+    @Benchmark
+    public ImagePage addImage() {
+        return buildPage();
+    }
+
+    @Benchmark
+    public ImagePage removePositions() {
+        pageToTrim.removePositions(positionsToRemove);
+        return pageToTrim;
+    }
+
+    @Benchmark
+    public int getEffectiveRows() {
+        return filledPage.getEffectiveRows();
+    }
+
+    private ImagePage buildPage() {
+        ImagePage page = new ImagePage();
+        for (int i = 0; i < size; i++) {
+            if (i % PLACEHOLDER_EVERY == 0) {
+                page.addPlaceholder();
+                page.addPlaceholder();
+            }
+            page.addImage(uris[i]);
+        }
+        return page;
+    }
+}
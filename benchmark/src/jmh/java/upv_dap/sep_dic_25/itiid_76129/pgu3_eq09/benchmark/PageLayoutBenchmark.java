@@ -0,0 +1,67 @@
+package upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import upv_dap.sep_dic_25.itiid_76129.pgu3_eq09.utils.PageLayoutEngine;
+
+/**
+ * Mide la geometría de celdas que el motor de composición entrega a la exportación y la vista previa.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PageLayoutBenchmark {
+
+    private static final int PAGE_WIDTH = 612 * 2;
+    private static final int PAGE_HEIGHT = 792 * 2;
+    private static final int COLUMNS = 4;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private int[] widths;
+    private int[] heights;
+    private final float[] rect = new float[4];
+
+    @Setup
+    public void createImageSizes() {
+        Random random = new Random(42);
+        widths = new int[size];
+        heights = new int[size];
+        for (int i = 0; i < size; i++) {
+            widths[i] = 800 + random.nextInt(7200);
+            heights[i] = 600 + random.nextInt(5400);
+        }
+    }
+
+    /**
+     * Calcula el rectángulo de dibujo de cada imagen de una página con {@code size} espacios;
+     * después de la primera iteración la composición sale de la caché del motor.
+     */
+    @Benchmark
+    public void layoutPage(Blackhole blackhole) {
+        PageLayoutEngine.PageLayout layout =
+            PageLayoutEngine.getInstance().layout(size, 1, COLUMNS, PAGE_WIDTH, PAGE_HEIGHT);
+        for (int i = 0; i < size; i++) {
+            layout.fit(i, widths[i], heights[i], rect);
+            blackhole.consume(rect[0] + rect[3]);
+        }
+    }
+
+    /**
+     * Construye la composición sin caché para medir el costo de precalcular las celdas.
+     */
+    @Benchmark
+    public PageLayoutEngine.PageLayout buildLayout() {
+        return new PageLayoutEngine.PageLayout(size, 1, COLUMNS, PAGE_WIDTH, PAGE_HEIGHT);
+    }
+}
@@ -21,4 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "Z_U3_itiid-76129_E_09"
 include(":app")
+include(":benchmark")
  
\ No newline at end of file